@@ -0,0 +1,3 @@
+Embulk::JavaPlugin.register_input(
+  "poi_excel", "org.embulk.input.poi_excel.PoiExcelInputPlugin",
+  File.expand_path('../../../../classpath', __FILE__))
@@ -0,0 +1,229 @@
+package org.embulk.input.poi_excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.embulk.config.Config;
+import org.embulk.config.ConfigDefault;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskReport;
+import org.embulk.config.TaskSource;
+import org.embulk.parser.poi_excel.PoiExcelParserPlugin;
+import org.embulk.parser.poi_excel.bean.PoiExcelSheetBean;
+import org.embulk.parser.poi_excel.bean.record.RecordType;
+import org.embulk.parser.poi_excel.reader.ReaderType;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.spi.Exec;
+import org.embulk.spi.InputPlugin;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.slf4j.Logger;
+
+import com.google.common.base.Optional;
+
+/**
+ * input plugin which reads local Excel files. a sheet is split into the row ranges, and each range is read by one task.
+ * <p>
+ * the options other than paths and rows_per_task are same as {@link PoiExcelParserPlugin}.
+ * </p>
+ */
+public class PoiExcelInputPlugin implements InputPlugin {
+	private final Logger log = Exec.getLogger(getClass());
+
+	public static final String TYPE = "poi_excel";
+
+	public interface PluginTask extends PoiExcelParserPlugin.PluginTask {
+
+		// files or directories
+		@Config("paths")
+		public List<String> getPaths();
+
+		// number of rows per task (record_type=row). null means a task per sheet
+		@Config("rows_per_task")
+		@ConfigDefault("null")
+		public Optional<Integer> getRowsPerTask();
+
+		public List<PoiExcelSplit> getSplits();
+
+		public void setSplits(List<PoiExcelSplit> splits);
+	}
+
+	@Override
+	public ConfigDiff transaction(ConfigSource config, InputPlugin.Control control) {
+		PluginTask task = config.loadConfig(PluginTask.class);
+
+		Schema schema = task.getColumns().toSchema();
+
+		List<PoiExcelSplit> splits = createSplits(task, schema);
+		if (log.isDebugEnabled()) {
+			log.debug("splits={}", splits);
+		}
+		task.setSplits(splits);
+
+		return resume(task.dump(), schema, splits.size(), control);
+	}
+
+	@Override
+	public ConfigDiff resume(TaskSource taskSource, Schema schema, int taskCount, InputPlugin.Control control) {
+		control.run(taskSource, schema, taskCount);
+		return Exec.newConfigDiff();
+	}
+
+	@Override
+	public void cleanup(TaskSource taskSource, Schema schema, int taskCount, List<TaskReport> successTaskReports) {
+	}
+
+	@Override
+	public TaskReport run(TaskSource taskSource, Schema schema, int taskIndex, PageOutput output) {
+		PluginTask task = taskSource.loadTask(PluginTask.class);
+
+		PoiExcelSplit split = task.getSplits().get(taskIndex);
+		log.info("split={}", split);
+
+		ReaderType readerType = ReaderType.of(task.getReader());
+		Workbook workbook;
+		try {
+			workbook = readerType.open(new File(split.getPath()), task.getParallelLoad());
+		} catch (IOException e) {
+			throw new RuntimeException(MessageFormat.format("workbook open error. file={0}", split.getPath()), e);
+		}
+		try {
+			List<String> sheetNames = Collections.singletonList(split.getSheetName());
+			newPoiExcelParserPlugin().run(task, schema, workbook, sheetNames, split.getStartRowIndex(),
+					split.getEndRowIndex(), output);
+		} finally {
+			try {
+				workbook.close();
+			} catch (IOException e) {
+				log.warn("workbook close error", e);
+			}
+		}
+
+		return Exec.newTaskReport();
+	}
+
+	protected PoiExcelParserPlugin newPoiExcelParserPlugin() {
+		return new PoiExcelParserPlugin();
+	}
+
+	@Override
+	public ConfigDiff guess(ConfigSource config) {
+		return Exec.newConfigDiff();
+	}
+
+	protected List<PoiExcelSplit> createSplits(PluginTask task, Schema schema) {
+		List<String> sheetNames = PoiExcelParserPlugin.getSheetNames(task);
+		int rowsPerTask = task.getRowsPerTask().or(0);
+		if (rowsPerTask < 0) {
+			throw new ConfigException(MessageFormat.format("illegal rows_per_task={0}", rowsPerTask));
+		}
+
+		List<PoiExcelSplit> splits = new ArrayList<>();
+		for (File file : listFiles(task.getPaths())) {
+			// the streaming reader is enough to count the rows
+			Workbook workbook;
+			try {
+				workbook = ReaderType.STREAMING.open(file);
+			} catch (IOException e) {
+				throw new RuntimeException(MessageFormat.format("workbook open error. file={0}", file), e);
+			}
+			try {
+				for (String sheetName : PoiExcelParserPlugin.resolveSheetName(workbook, sheetNames)) {
+					Sheet sheet = workbook.getSheet(sheetName);
+					if (sheet == null) {
+						if (task.getIgnoreSheetNotFound()) {
+							log.info("ignore: not found sheet={}, file={}", sheetName, file);
+							continue;
+						} else {
+							throw new RuntimeException(MessageFormat.format("not found sheet={0}, file={1}",
+									sheetName, file));
+						}
+					}
+					addSplits(splits, task, schema, file, sheet, rowsPerTask);
+				}
+			} finally {
+				try {
+					workbook.close();
+				} catch (IOException e) {
+					log.warn("workbook close error", e);
+				}
+			}
+		}
+		return splits;
+	}
+
+	protected void addSplits(List<PoiExcelSplit> splits, PluginTask task, Schema schema, File file, Sheet sheet,
+			int rowsPerTask) {
+		String path = file.getAbsolutePath();
+		String sheetName = sheet.getSheetName();
+
+		int lastRowIndex = -1;
+		if (rowsPerTask > 0) {
+			PoiExcelSheetBean sheetBean = new PoiExcelSheetBean(task, schema, sheet);
+			// stop_on_empty_rows depends on the rows before the range
+			if (sheetBean.getRecordType() == RecordType.ROW && sheetBean.getStopOnEmptyRows() <= 0) {
+				lastRowIndex = getLastRowIndex(sheet);
+			}
+		}
+		if (lastRowIndex < rowsPerTask) {
+			splits.add(new PoiExcelSplit(path, sheetName, 0, Integer.MAX_VALUE));
+			return;
+		}
+
+		for (long start = 0; start <= lastRowIndex; start += rowsPerTask) {
+			long end = start + rowsPerTask;
+			splits.add(new PoiExcelSplit(path, sheetName, (int) start, (end > lastRowIndex) ? Integer.MAX_VALUE
+					: (int) end));
+		}
+	}
+
+	protected int getLastRowIndex(Sheet sheet) {
+		if (!(sheet instanceof StreamingSheet)) {
+			return sheet.getLastRowNum();
+		}
+
+		// read the rows without cells
+		StreamingSheet streamingSheet = (StreamingSheet) sheet;
+		streamingSheet.setColumnFilter(new BitSet());
+		int lastRowIndex = -1;
+		for (Iterator<Row> i = streamingSheet.rowIterator(); i.hasNext();) {
+			lastRowIndex = i.next().getRowNum();
+		}
+		return lastRowIndex;
+	}
+
+	protected List<File> listFiles(List<String> paths) {
+		List<File> list = new ArrayList<>();
+		for (String path : paths) {
+			File file = new File(path);
+			if (file.isDirectory()) {
+				File[] files = file.listFiles();
+				if (files != null) {
+					Arrays.sort(files);
+					for (File f : files) {
+						if (f.isFile()) {
+							list.add(f);
+						}
+					}
+				}
+			} else if (file.isFile()) {
+				list.add(file);
+			} else {
+				throw new ConfigException(MessageFormat.format("not found path={0}", path));
+			}
+		}
+		return list;
+	}
+}
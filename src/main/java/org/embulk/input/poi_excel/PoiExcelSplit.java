@@ -0,0 +1,60 @@
+package org.embulk.input.poi_excel;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * the rows of a sheet read by one task.
+ */
+public class PoiExcelSplit {
+
+	private final String path;
+	private final String sheetName;
+	private final int startRowIndex;
+	private final int endRowIndex;
+
+	/**
+	 * @param path
+	 *            file path
+	 * @param sheetName
+	 *            sheet name
+	 * @param startRowIndex
+	 *            first row index (0 origin)
+	 * @param endRowIndex
+	 *            last row index + 1
+	 */
+	@JsonCreator
+	public PoiExcelSplit(@JsonProperty("path") String path, @JsonProperty("sheet") String sheetName,
+			@JsonProperty("start_row_index") int startRowIndex, @JsonProperty("end_row_index") int endRowIndex) {
+		this.path = path;
+		this.sheetName = sheetName;
+		this.startRowIndex = startRowIndex;
+		this.endRowIndex = endRowIndex;
+	}
+
+	@JsonProperty("path")
+	public String getPath() {
+		return path;
+	}
+
+	@JsonProperty("sheet")
+	public String getSheetName() {
+		return sheetName;
+	}
+
+	@JsonProperty("start_row_index")
+	public int getStartRowIndex() {
+		return startRowIndex;
+	}
+
+	@JsonProperty("end_row_index")
+	public int getEndRowIndex() {
+		return endRowIndex;
+	}
+
+	@Override
+	public String toString() {
+		String end = (endRowIndex == Integer.MAX_VALUE) ? "" : Integer.toString(endRowIndex);
+		return String.format("%s!%s[%d:%s]", path, sheetName, startRowIndex, end);
+	}
+}
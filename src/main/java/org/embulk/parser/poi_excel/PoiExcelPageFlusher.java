@@ -0,0 +1,147 @@
+package org.embulk.parser.poi_excel;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.config.ConfigException;
+import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.Exec;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.slf4j.Logger;
+
+/**
+ * flush policy of PageBuilder, and statistics of the emitted pages.
+ * <p>
+ * PageBuilder emits a page when the page is full. this class flushes the page additionally every flush_count records,
+ * every flush_interval milliseconds, and at the end of each sheet (flush_on_sheet).
+ * </p>
+ */
+public class PoiExcelPageFlusher implements PageOutput {
+	private final Logger log = Exec.getLogger(getClass());
+
+	private final PageOutput output;
+	private final int flushCount;
+	private final long flushIntervalNanos;
+	private final boolean flushOnSheet;
+
+	private PageBuilder pageBuilder;
+	private int count;
+	private long lastFlushTime;
+
+	private final Statistics sheetStatistics = new Statistics();
+	private final Statistics totalStatistics = new Statistics();
+
+	public PoiExcelPageFlusher(PluginTask task, PageOutput output) {
+		this.output = output;
+
+		this.flushCount = task.getFlushCount().or(0);
+		if (flushCount < 0) {
+			throw new ConfigException(MessageFormat.format("illegal flush_count={0}", flushCount));
+		}
+		int interval = task.getFlushInterval();
+		if (interval < 0) {
+			throw new ConfigException(MessageFormat.format("illegal flush_interval={0}", interval));
+		}
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+		this.flushOnSheet = task.getFlushOnSheet();
+	}
+
+	public void setPageBuilder(PageBuilder pageBuilder) {
+		this.pageBuilder = pageBuilder;
+		this.lastFlushTime = System.nanoTime();
+	}
+
+	public void startSheet() {
+		sheetStatistics.clear();
+	}
+
+	/**
+	 * called after {@link PageBuilder#addRecord()}.
+	 */
+	public void addRecord() {
+		sheetStatistics.records++;
+		totalStatistics.records++;
+
+		if (flushCount > 0 && ++count >= flushCount) {
+			flush();
+			return;
+		}
+		if (flushIntervalNanos > 0 && System.nanoTime() - lastFlushTime >= flushIntervalNanos) {
+			flush();
+		}
+	}
+
+	public void endSheet(String sheetName) {
+		if (flushOnSheet) {
+			flush();
+			if (log.isInfoEnabled()) {
+				log.info("sheet={}, records={}, {}", sheetName, sheetStatistics.records, sheetStatistics);
+			}
+		} else {
+			// the page is shared with the next sheet, so the pages are counted in total only
+			log.info("sheet={}, records={}", sheetName, sheetStatistics.records);
+		}
+	}
+
+	protected void flush() {
+		log.trace("flush");
+		pageBuilder.flush();
+		count = 0;
+		lastFlushTime = System.nanoTime();
+	}
+
+	// PageOutput
+
+	@Override
+	public void add(Page page) {
+		Buffer buffer = page.buffer();
+		sheetStatistics.add(buffer);
+		totalStatistics.add(buffer);
+		count = 0;
+		lastFlushTime = System.nanoTime();
+
+		output.add(page);
+	}
+
+	@Override
+	public void finish() {
+		if (log.isInfoEnabled()) {
+			log.info("total records={}, {}", totalStatistics.records, totalStatistics);
+		}
+		output.finish();
+	}
+
+	@Override
+	public void close() {
+		output.close();
+	}
+
+	private static class Statistics {
+		long records;
+		long pages;
+		long bytes;
+		long capacity;
+
+		public void clear() {
+			records = 0;
+			pages = 0;
+			bytes = 0;
+			capacity = 0;
+		}
+
+		public void add(Buffer buffer) {
+			pages++;
+			bytes += buffer.limit();
+			capacity += buffer.capacity();
+		}
+
+		@Override
+		public String toString() {
+			double fill = (capacity > 0) ? bytes * 100d / capacity : 0;
+			return String.format("pages=%d, average page fill=%.1f%%", pages, fill);
+		}
+	}
+}
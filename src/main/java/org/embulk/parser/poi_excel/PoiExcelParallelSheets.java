@@ -0,0 +1,324 @@
+package org.embulk.parser.poi_excel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.bean.PoiExcelSheetBean;
+import org.embulk.parser.poi_excel.bean.util.FormulaCacheClear;
+import org.embulk.parser.poi_excel.bean.util.PoiExcelCellAddress;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.parser.poi_excel.visitor.PoiExcelCellCommentVisitor;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.Exec;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.slf4j.Logger;
+
+/**
+ * read the sheets of a workbook by the worker threads (parallel_sheets).
+ * <p>
+ * each sheet has its own visitors and PageBuilder. the pages are emitted to the output by the task thread, in sheet
+ * order (parallel_sheets_ordered=true) or as soon as they are ready. formula_cache_clear=never is applied per sheet.
+ * </p>
+ * <p>
+ * the first error of the workers is reported by the task thread at once (even if it is waiting for the pages of the
+ * other sheet), and the other workers stop at their next page.
+ * </p>
+ */
+public class PoiExcelParallelSheets {
+	private final Logger log = Exec.getLogger(getClass());
+
+	// pages buffered per sheet (ordered) or per thread
+	private static final int QUEUE_PAGES = 16;
+
+	private final PoiExcelParserPlugin plugin;
+	private final PluginTask task;
+	private final Schema schema;
+	private final int threads;
+	private final boolean ordered;
+
+	// the first error of the workers
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final List<BlockingQueue<SheetPage>> queues = new ArrayList<>();
+
+	// put into the queues when a worker fails
+	private static final SheetPage FAILED = new SheetPage(null, null);
+
+	public PoiExcelParallelSheets(PoiExcelParserPlugin plugin, PluginTask task, Schema schema, int threads) {
+		this.plugin = plugin;
+		this.task = task;
+		this.schema = schema;
+		this.threads = threads;
+		this.ordered = task.getParallelSheetsOrdered();
+	}
+
+	public void run(List<Sheet> sheets, int startRowIndex, int endRowIndex, PageOutput output) {
+		log.info("parallel_sheets={}, ordered={}", threads, ordered);
+		prepareComments(sheets);
+
+		BlockingQueue<SheetPage> sharedQueue = ordered ? null : new ArrayBlockingQueue<SheetPage>(QUEUE_PAGES
+				* threads);
+		List<SheetJob> jobs = new ArrayList<>(sheets.size());
+		for (Sheet sheet : sheets) {
+			BlockingQueue<SheetPage> queue = ordered ? new ArrayBlockingQueue<SheetPage>(QUEUE_PAGES) : sharedQueue;
+			jobs.add(new SheetJob(sheet, startRowIndex, endRowIndex, queue));
+			if (!queues.contains(queue)) {
+				queues.add(queue);
+			}
+		}
+
+		// the worker threads inherit the Exec session of the task thread
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new SheetThreadFactory());
+		try {
+			for (SheetJob job : jobs) {
+				job.future = executor.submit(job);
+			}
+			executor.shutdown();
+
+			if (ordered) {
+				for (SheetJob job : jobs) {
+					for (;;) {
+						SheetPage item = take(job.queue);
+						if (item.page == null) {
+							item.job.checkError();
+							break;
+						}
+						output.add(item.page);
+					}
+				}
+			} else {
+				for (int remaining = jobs.size(); remaining > 0;) {
+					SheetPage item = take(sharedQueue);
+					if (item.page == null) {
+						item.job.checkError();
+						remaining--;
+						continue;
+					}
+					output.add(item.page);
+				}
+			}
+			output.finish();
+		} finally {
+			// stop the workers at the next page (if an error occurred)
+			executor.shutdownNow();
+			for (SheetJob job : jobs) {
+				job.releasePages();
+			}
+			awaitTermination(executor);
+			for (SheetJob job : jobs) {
+				job.releasePages();
+			}
+		}
+	}
+
+	/**
+	 * POI initializes the drawing of the sheet (and the drawing group of HSSFWorkbook) on the first access to the
+	 * comments, which is not thread-safe. initialize them by the task thread.
+	 */
+	protected void prepareComments(List<Sheet> sheets) {
+		Set<Sheet> targets = new LinkedHashSet<>();
+		for (Sheet sheet : sheets) {
+			if (sheet instanceof StreamingSheet) {
+				// the comments of the streaming sheet are read by the thread of the sheet
+				continue;
+			}
+			PoiExcelSheetBean sheetBean = new PoiExcelSheetBean(task, schema, sheet);
+			for (PoiExcelColumnBean bean : sheetBean.getColumnBeans()) {
+				if (bean.getValueType() != PoiExcelColumnValueType.CELL_COMMENT) {
+					continue;
+				}
+				PoiExcelCellAddress cellAddress = bean.getCellAddress();
+				Sheet target = sheet;
+				if (cellAddress != null && cellAddress.getSheetName() != null) {
+					target = sheet.getWorkbook().getSheet(cellAddress.getSheetName());
+				}
+				if (target != null) {
+					targets.add(target);
+				}
+			}
+		}
+		for (Sheet sheet : targets) {
+			PoiExcelCellCommentVisitor.createCommentIndex(sheet);
+		}
+	}
+
+	private SheetPage take(BlockingQueue<SheetPage> queue) {
+		// the failure is set before FAILED is offered. if the queue was full, FAILED is not in it
+		checkFailure();
+		SheetPage item;
+		try {
+			item = queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		if (item.page == null) {
+			// FAILED or the end of the sheet
+			checkFailure();
+		}
+		return item;
+	}
+
+	private void fail(Throwable t) {
+		if (failure.compareAndSet(null, t)) {
+			// wake up the task thread
+			for (BlockingQueue<SheetPage> queue : queues) {
+				queue.offer(FAILED);
+			}
+		}
+	}
+
+	private void checkFailure() {
+		Throwable t = failure.get();
+		if (t == null) {
+			return;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		throw new RuntimeException(t);
+	}
+
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.info("waiting for the sheet threads to stop");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class SheetPage {
+		final SheetJob job;
+		final Page page; // null means the end of the sheet
+
+		public SheetPage(SheetJob job, Page page) {
+			this.job = job;
+			this.page = page;
+		}
+	}
+
+	private class SheetJob implements Callable<Void>, PageOutput {
+		private final Sheet sheet;
+		private final int startRowIndex;
+		private final int endRowIndex;
+		private final BlockingQueue<SheetPage> queue;
+
+		// created by the task thread
+		private final BufferAllocator allocator = Exec.getBufferAllocator();
+		private final PoiExcelPageFlusher flusher = new PoiExcelPageFlusher(task, this);
+
+		Future<Void> future;
+
+		public SheetJob(Sheet sheet, int startRowIndex, int endRowIndex, BlockingQueue<SheetPage> queue) {
+			this.sheet = sheet;
+			this.startRowIndex = startRowIndex;
+			this.endRowIndex = endRowIndex;
+			this.queue = queue;
+		}
+
+		@Override
+		public Void call() throws InterruptedException {
+			try (PageBuilder pageBuilder = new PageBuilder(allocator, schema, flusher)) {
+				flusher.setPageBuilder(pageBuilder);
+				FormulaCacheClear cacheClear = FormulaCacheClear.of(task.getFormulaCacheClear());
+				plugin.runSheet(task, schema, sheet, startRowIndex, endRowIndex, cacheClear, null, pageBuilder,
+						flusher);
+				pageBuilder.finish();
+			} catch (Throwable t) {
+				fail(t);
+				throw t;
+			} finally {
+				queue.put(new SheetPage(this, null));
+			}
+			return null;
+		}
+
+		public void checkError() {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+
+		public void releasePages() {
+			for (SheetPage item; (item = queue.poll()) != null;) {
+				if (item.page != null) {
+					item.page.release();
+				}
+			}
+		}
+
+		// PageOutput (called by the worker thread)
+
+		@Override
+		public void add(Page page) {
+			if (failure.get() != null) {
+				page.release();
+				throw new RuntimeException("sheet reading is cancelled by the error of the other sheet");
+			}
+			try {
+				queue.put(new SheetPage(this, page));
+			} catch (InterruptedException e) {
+				page.release();
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("sheet reading is cancelled", e);
+			}
+		}
+
+		@Override
+		public void finish() {
+			// the end of the sheet is put by call()
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class SheetThreadFactory implements ThreadFactory {
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = factory.newThread(r);
+			thread.setName("poi_excel-sheet-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
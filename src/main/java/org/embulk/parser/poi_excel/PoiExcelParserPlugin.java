@@ -1,26 +1,40 @@
 package org.embulk.parser.poi_excel;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import org.apache.poi.EncryptedDocumentException;
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
 import org.embulk.config.Config;
 import org.embulk.config.ConfigDefault;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.Task;
 import org.embulk.config.TaskSource;
+import org.embulk.parser.poi_excel.PoiExcelPrefetcher.PrefetchedFile;
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
 import org.embulk.parser.poi_excel.bean.PoiExcelSheetBean;
 import org.embulk.parser.poi_excel.bean.record.PoiExcelRecord;
+import org.embulk.parser.poi_excel.bean.record.RecordType;
+import org.embulk.parser.poi_excel.bean.util.FormulaCacheClear;
+import org.embulk.parser.poi_excel.bean.util.FormulaCacheClear.Timing;
+import org.embulk.parser.poi_excel.bean.util.PoiExcelCellAddress;
+import org.embulk.parser.poi_excel.bean.util.SearchMergedCell;
+import org.embulk.parser.poi_excel.reader.ReaderType;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.parser.poi_excel.reader.stream.StreamingWorkbook;
+import org.embulk.parser.poi_excel.visitor.PoiExcelColumnExtractor;
 import org.embulk.parser.poi_excel.visitor.PoiExcelColumnVisitor;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorFactory;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
@@ -63,9 +77,63 @@ public class PoiExcelParserPlugin implements ParserPlugin {
 		@Config("columns")
 		public SchemaConfig getColumns();
 
+		// flush the page every N records. (default: flush when the page is full)
 		@Config("flush_count")
-		@ConfigDefault("100")
-		public int getFlushCount();
+		@ConfigDefault("null")
+		public Optional<Integer> getFlushCount();
+
+		// flush the page every N milliseconds. 0 means not to flush by time
+		@Config("flush_interval")
+		@ConfigDefault("0")
+		public int getFlushInterval();
+
+		// flush the page at the end of each sheet
+		@Config("flush_on_sheet")
+		@ConfigDefault("false")
+		public boolean getFlushOnSheet();
+
+		// number of threads to read the sheets of a workbook
+		@Config("parallel_sheets")
+		@ConfigDefault("1")
+		public int getParallelSheets();
+
+		// emit the pages in sheet order (false: as soon as they are ready)
+		@Config("parallel_sheets_ordered")
+		@ConfigDefault("true")
+		public boolean getParallelSheetsOrdered();
+
+		// number of threads to convert the rows. 0 means not to use the pipeline
+		@Config("pipeline_threads")
+		@ConfigDefault("0")
+		public int getPipelineThreads();
+
+		/**
+		 * @see ReaderType
+		 * @return reader
+		 */
+		@Config("reader")
+		@ConfigDefault("\"usermodel\"")
+		public String getReader();
+
+		// never, sheet or number of records
+		@Config("formula_cache_clear")
+		@ConfigDefault("\"sheet\"")
+		public String getFormulaCacheClear();
+
+		// copy the input to a temporary file and open the workbook from the file
+		@Config("spool_file")
+		@ConfigDefault("false")
+		public boolean getSpoolFile();
+
+		// number of files to spool and open ahead by a background thread. 0 means not to prefetch
+		@Config("prefetch_files")
+		@ConfigDefault("0")
+		public int getPrefetchFiles();
+
+		// load the shared strings and the styles of xlsx by the background threads (reader=streaming)
+		@Config("parallel_load")
+		@ConfigDefault("false")
+		public boolean getParallelLoad();
 	}
 
 	public interface SheetCommonOptionTask extends Task, ColumnCommonOptionTask {
@@ -77,6 +145,14 @@ public class PoiExcelParserPlugin implements ParserPlugin {
 		@Config("skip_header_lines")
 		@ConfigDefault("null")
 		public Optional<Integer> getSkipHeaderLines();
+
+		@Config("skip_empty_rows")
+		@ConfigDefault("null")
+		public Optional<Boolean> getSkipEmptyRows();
+
+		@Config("stop_on_empty_rows")
+		@ConfigDefault("null")
+		public Optional<Integer> getStopOnEmptyRows();
 	}
 
 	public interface SheetOptionTask extends Task, SheetCommonOptionTask {
@@ -132,6 +208,16 @@ public class PoiExcelParserPlugin implements ParserPlugin {
 		@ConfigDefault("null")
 		public Optional<String> getNumericFormat();
 
+		// accept full-width digits and thousands separators in string to long/double
+		@Config("numeric_lenient")
+		@ConfigDefault("null")
+		public Optional<Boolean> getNumericLenient();
+
+		// use numeric text in the file as is (reader=streaming)
+		@Config("numeric_raw_text")
+		@ConfigDefault("null")
+		public Optional<Boolean> getNumericRawText();
+
 		// search merged cell if cellType=BLANK
 		@Config("search_merged_cell")
 		@ConfigDefault("null")
@@ -182,6 +268,85 @@ public class PoiExcelParserPlugin implements ParserPlugin {
 	public void run(TaskSource taskSource, Schema schema, FileInput input, PageOutput output) {
 		PluginTask task = taskSource.loadTask(PluginTask.class);
 
+		List<String> sheetNames = getSheetNames(task);
+
+		ReaderType readerType = ReaderType.of(task.getReader());
+		final boolean spoolFile = task.getSpoolFile();
+		final boolean parallelLoad = task.getParallelLoad();
+
+		try (FileInputInputStream is = new FileInputInputStream(input)) {
+			int prefetchFiles = task.getPrefetchFiles();
+			if (prefetchFiles > 0) {
+				try (PoiExcelPrefetcher prefetcher = new PoiExcelPrefetcher(this, task, is, prefetchFiles)) {
+					prefetcher.start();
+					for (PrefetchedFile file; (file = prefetcher.next()) != null;) {
+						try {
+							runWorkbook(task, schema, file.getWorkbook(), sheetNames, output);
+						} finally {
+							file.close();
+						}
+					}
+				}
+				return;
+			}
+
+			while (is.nextFile()) {
+				File file = null;
+				try {
+					Workbook workbook;
+					try {
+						if (spoolFile) {
+							file = spool(is);
+							workbook = readerType.open(file, parallelLoad);
+						} else {
+							workbook = readerType.open(is, parallelLoad);
+						}
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+
+					try {
+						runWorkbook(task, schema, workbook, sheetNames, output);
+					} finally {
+						try {
+							workbook.close();
+						} catch (IOException e) {
+							log.warn("workbook close error", e);
+						}
+					}
+				} finally {
+					if (file != null && !file.delete()) {
+						log.warn("temporary file delete error. file={}", file);
+					}
+				}
+			}
+		}
+	}
+
+	private void runWorkbook(PluginTask task, Schema schema, Workbook workbook, List<String> sheetNames,
+			PageOutput output) {
+		List<String> list = resolveSheetName(workbook, sheetNames);
+		if (log.isDebugEnabled()) {
+			log.debug("resolved sheet names={}", list);
+		}
+		run(task, schema, workbook, list, output);
+	}
+
+	File spool(FileInputInputStream is) throws IOException {
+		File file = Exec.getTempFileSpace().createTempFile();
+		long size = Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		if (log.isDebugEnabled()) {
+			log.debug("spooled {} bytes to {}", size, file);
+		}
+		return file;
+	}
+
+	/**
+	 * @param task
+	 *            task
+	 * @return sheet and sheets (may contain wildcard)
+	 */
+	public static List<String> getSheetNames(PluginTask task) {
 		List<String> sheetNames = new ArrayList<>();
 		Optional<String> sheetOption = task.getSheet();
 		if (sheetOption.isPresent()) {
@@ -191,26 +356,10 @@ public class PoiExcelParserPlugin implements ParserPlugin {
 		if (sheetNames.isEmpty()) {
 			throw new ConfigException("Attribute sheets is required but not set");
 		}
-
-		try (FileInputInputStream is = new FileInputInputStream(input)) {
-			while (is.nextFile()) {
-				Workbook workbook;
-				try {
-					workbook = WorkbookFactory.create(is);
-				} catch (IOException | EncryptedDocumentException | InvalidFormatException e) {
-					throw new RuntimeException(e);
-				}
-
-				List<String> list = resolveSheetName(workbook, sheetNames);
-				if (log.isDebugEnabled()) {
-					log.debug("resolved sheet names={}", list);
-				}
-				run(task, schema, workbook, list, output);
-			}
-		}
+		return sheetNames;
 	}
 
-	private List<String> resolveSheetName(Workbook workbook, List<String> sheetNames) {
+	public static List<String> resolveSheetName(Workbook workbook, List<String> sheetNames) {
 		Set<String> set = new LinkedHashSet<>();
 		for (String s : sheetNames) {
 			if (s.contains("*") || s.contains("?")) {
@@ -258,54 +407,221 @@ public class PoiExcelParserPlugin implements ParserPlugin {
 	}
 
 	protected void run(PluginTask task, Schema schema, Workbook workbook, List<String> sheetNames, PageOutput output) {
-		final int flushCount = task.getFlushCount();
-
-		try (PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output)) {
-			for (String sheetName : sheetNames) {
-				Sheet sheet = workbook.getSheet(sheetName);
-				if (sheet == null) {
-					if (task.getIgnoreSheetNotFound()) {
-						log.info("ignore: not found sheet={}", sheetName);
-						continue;
-					} else {
-						throw new RuntimeException(MessageFormat.format("not found sheet={0}", sheetName));
-					}
+		run(task, schema, workbook, sheetNames, 0, Integer.MAX_VALUE, output);
+	}
+
+	/**
+	 * read the sheets.
+	 *
+	 * @param task
+	 *            task
+	 * @param schema
+	 *            schema
+	 * @param workbook
+	 *            workbook
+	 * @param sheetNames
+	 *            sheet names
+	 * @param startRowIndex
+	 *            first row index of the sheets (record_type=row)
+	 * @param endRowIndex
+	 *            last row index + 1 (record_type=row)
+	 * @param output
+	 *            output
+	 */
+	public void run(PluginTask task, Schema schema, Workbook workbook, List<String> sheetNames, int startRowIndex,
+			int endRowIndex, PageOutput output) {
+		List<Sheet> sheets = new ArrayList<>(sheetNames.size());
+		for (String sheetName : sheetNames) {
+			Sheet sheet = workbook.getSheet(sheetName);
+			if (sheet == null) {
+				if (task.getIgnoreSheetNotFound()) {
+					log.info("ignore: not found sheet={}", sheetName);
+					continue;
+				} else {
+					throw new RuntimeException(MessageFormat.format("not found sheet={0}", sheetName));
 				}
+			}
+			sheets.add(sheet);
+		}
 
-				log.info("sheet={}", sheetName);
-				PoiExcelVisitorFactory factory = newPoiExcelVisitorFactory(task, schema, sheet, pageBuilder);
-				PoiExcelColumnVisitor visitor = factory.getPoiExcelColumnVisitor();
-				PoiExcelSheetBean sheetBean = factory.getVisitorValue().getSheetBean();
-				final int skipHeaderLines = sheetBean.getSkipHeaderLines();
+		int threads = Math.min(task.getParallelSheets(), sheets.size());
+		if (threads > 1 && canReadInParallel(task, schema, workbook, sheets)) {
+			new PoiExcelParallelSheets(this, task, schema, threads).run(sheets, startRowIndex, endRowIndex, output);
+			return;
+		}
+		int pipelineThreads = task.getPipelineThreads();
+		if (pipelineThreads > 0 && canReadInPipeline(task, schema, sheets)) {
+			new PoiExcelPipeline(this, task, schema, pipelineThreads).run(sheets, startRowIndex, endRowIndex, output);
+			return;
+		}
 
-				PoiExcelRecord record = sheetBean.getRecordType().newPoiExcelRecord();
-				record.initialize(sheet, skipHeaderLines);
-				visitor.setRecord(record);
+		final PoiExcelPageFlusher flusher = new PoiExcelPageFlusher(task, output);
+		final FormulaCacheClear cacheClear = FormulaCacheClear.of(task.getFormulaCacheClear());
+		FormulaEvaluator workbookEvaluator = null;
+
+		try (PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, flusher)) {
+			flusher.setPageBuilder(pageBuilder);
+			for (Sheet sheet : sheets) {
+				FormulaEvaluator evaluator = runSheet(task, schema, sheet, startRowIndex, endRowIndex, cacheClear,
+						workbookEvaluator, pageBuilder, flusher);
+				if (cacheClear.getTiming() == Timing.NEVER) {
+					workbookEvaluator = evaluator;
+				}
+			}
+			pageBuilder.finish();
+		}
+	}
 
-				int count = 0;
-				for (; record.exists(); record.moveNext()) {
-					record.logStart();
+	/**
+	 * read a sheet.
+	 *
+	 * @param workbookEvaluator
+	 *            evaluator shared by the sheets (formula_cache_clear=never). null if not created yet
+	 * @return evaluator to share with the next sheet (formula_cache_clear=never). null if not created yet
+	 */
+	protected FormulaEvaluator runSheet(PluginTask task, Schema schema, Sheet sheet, int startRowIndex,
+			int endRowIndex, FormulaCacheClear cacheClear, FormulaEvaluator workbookEvaluator,
+			PageBuilder pageBuilder, PoiExcelPageFlusher flusher) {
+		String sheetName = sheet.getSheetName();
+		log.info("sheet={}", sheetName);
+		PoiExcelVisitorFactory factory = newPoiExcelVisitorFactory(task, schema, sheet, pageBuilder);
+		PoiExcelColumnVisitor visitor = factory.getPoiExcelColumnVisitor();
+		PoiExcelVisitorValue visitorValue = factory.getVisitorValue();
+		if (cacheClear.getTiming() == Timing.NEVER && workbookEvaluator != null) {
+			visitorValue.setFormulaEvaluator(workbookEvaluator);
+		}
+		final int clearInterval = cacheClear.getInterval();
+		PoiExcelSheetBean sheetBean = visitorValue.getSheetBean();
+		if (sheet instanceof StreamingSheet) {
+			prepareStreamingSheet((StreamingSheet) sheet, sheetBean);
+		}
+		final int skipHeaderLines = sheetBean.getSkipHeaderLines();
+
+		PoiExcelRecord record = sheetBean.getRecordType().newPoiExcelRecord();
+		record.setRowRange(startRowIndex, endRowIndex);
+		record.initialize(sheetBean, sheet, skipHeaderLines);
+		visitor.setRecord(record);
+		PoiExcelColumnExtractor[] extractors = visitor.createExtractors(schema);
+
+		flusher.startSheet();
+		int evaluateCount = 0;
+		for (; record.exists(); record.moveNext()) {
+			record.logStart();
+
+			visitor.extract(extractors); // use record
+			pageBuilder.addRecord();
+			flusher.addRecord();
+
+			if (clearInterval > 0 && ++evaluateCount >= clearInterval) {
+				visitorValue.clearFormulaCache();
+				evaluateCount = 0;
+			}
 
-					schema.visitColumns(visitor); // use record
-					pageBuilder.addRecord();
+			record.logEnd();
+		}
+		flusher.endSheet(sheetName);
+		sheetBean.releaseMergedRegionFinder();
+		if (cacheClear.getTiming() == Timing.NEVER) {
+			// the evaluator is created when a formula is evaluated (never for reader=streaming)
+			return visitorValue.getCreatedFormulaEvaluator();
+		}
+		return null;
+	}
 
-					if (++count >= flushCount) {
-						log.trace("flush");
-						pageBuilder.flush();
-						count = 0;
-					}
+	protected boolean canReadInPipeline(PluginTask task, Schema schema, List<Sheet> sheets) {
+		for (Sheet sheet : sheets) {
+			PoiExcelSheetBean sheetBean = new PoiExcelSheetBean(task, schema, sheet);
+			String reason = PoiExcelPipeline.getUnsupportedReason(sheetBean, sheet);
+			if (reason != null) {
+				log.info("pipeline_threads is disabled. sheet={}, {}", sheet.getSheetName(), reason);
+				return false;
+			}
+		}
+		return true;
+	}
 
-					record.logEnd();
+	/**
+	 * the streaming sheet keeps the read position, so it cannot be referred from the other sheets in parallel.
+	 *
+	 * @return false if a sheet refers to the other streaming sheet (cell_address)
+	 */
+	protected boolean canReadInParallel(PluginTask task, Schema schema, Workbook workbook, List<Sheet> sheets) {
+		if (!(workbook instanceof StreamingWorkbook)) {
+			return true;
+		}
+		for (Sheet sheet : sheets) {
+			PoiExcelSheetBean sheetBean = new PoiExcelSheetBean(task, schema, sheet);
+			for (PoiExcelColumnBean bean : sheetBean.getColumnBeans()) {
+				PoiExcelCellAddress cellAddress = bean.getCellAddress();
+				if (cellAddress != null && cellAddress.getSheetName() != null
+						&& workbook.getSheet(cellAddress.getSheetName()) != sheet) {
+					log.info("parallel_sheets is disabled. sheet={} refers to sheet={}", sheet.getSheetName(),
+							cellAddress.getSheetName());
+					return false;
 				}
-				pageBuilder.flush();
 			}
-			pageBuilder.finish();
 		}
+		return true;
+	}
+
+	/**
+	 * register the rows which are read by random access (cell_address), and the columns which are read.
+	 */
+	protected void prepareStreamingSheet(StreamingSheet sheet, PoiExcelSheetBean sheetBean) {
+		for (PoiExcelColumnBean bean : sheetBean.getColumnBeans()) {
+			PoiExcelCellAddress cellAddress = bean.getCellAddress();
+			if (cellAddress != null) {
+				String sheetName = cellAddress.getSheetName();
+				Sheet target = (sheetName != null) ? sheet.getWorkbook().getSheet(sheetName) : sheet;
+				if (target instanceof StreamingSheet) {
+					((StreamingSheet) target).retainRow(cellAddress.getRowIndex());
+				}
+			}
+		}
+
+		sheet.setColumnFilter(getReferencedColumns(sheet, sheetBean));
+	}
+
+	/**
+	 * @return column indexes used by record_type=row (null if all columns)
+	 */
+	protected BitSet getReferencedColumns(Sheet sheet, PoiExcelSheetBean sheetBean) {
+		if (sheetBean.getRecordType() != RecordType.ROW) {
+			return null;
+		}
+
+		BitSet columns = new BitSet();
+		boolean searchMergedCell = false;
+		for (PoiExcelColumnBean bean : sheetBean.getColumnBeans()) {
+			if (bean.getCellAddress() != null || !bean.getValueType().useCell(RecordType.ROW)) {
+				continue;
+			}
+			columns.set(bean.getColumnIndex());
+			if (bean.getSearchMergedCell() != SearchMergedCell.NONE) {
+				searchMergedCell = true;
+			}
+		}
+
+		if (searchMergedCell) {
+			// the value of the merged cell is in the first column of the region
+			BitSet used = (BitSet) columns.clone();
+			for (CellRangeAddress region : sheet.getMergedRegions()) {
+				int next = used.nextSetBit(region.getFirstColumn());
+				if (next >= 0 && next <= region.getLastColumn()) {
+					columns.set(region.getFirstColumn());
+				}
+			}
+		}
+		return columns;
 	}
 
 	protected PoiExcelVisitorFactory newPoiExcelVisitorFactory(PluginTask task, Schema schema, Sheet sheet,
 			PageBuilder pageBuilder) {
 		PoiExcelVisitorValue visitorValue = new PoiExcelVisitorValue(task, schema, sheet, pageBuilder);
+		return newPoiExcelVisitorFactory(visitorValue);
+	}
+
+	protected PoiExcelVisitorFactory newPoiExcelVisitorFactory(PoiExcelVisitorValue visitorValue) {
 		return new PoiExcelVisitorFactory(visitorValue);
 	}
 }
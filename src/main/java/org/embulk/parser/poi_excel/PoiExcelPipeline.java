@@ -0,0 +1,536 @@
+package org.embulk.parser.poi_excel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.bean.PoiExcelSheetBean;
+import org.embulk.parser.poi_excel.bean.record.PoiExcelRecordFixedRow;
+import org.embulk.parser.poi_excel.bean.record.PoiExcelRecordRow;
+import org.embulk.parser.poi_excel.bean.record.RecordType;
+import org.embulk.parser.poi_excel.bean.util.FormulaCacheClear;
+import org.embulk.parser.poi_excel.bean.util.SearchMergedCell;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.parser.poi_excel.visitor.PoiExcelColumnExtractor;
+import org.embulk.parser.poi_excel.visitor.PoiExcelColumnVisitor;
+import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorFactory;
+import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.spi.Column;
+import org.embulk.spi.Exec;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.time.Timestamp;
+import org.slf4j.Logger;
+
+/**
+ * pipelined reading of the sheets (pipeline_threads, record_type=row).
+ * <p>
+ * the reader thread iterates the rows, and passes them to the converters by batch. each converter has its own
+ * visitors, and converts a batch into the values of the records. the task thread writes the values to the only
+ * PageBuilder in row order, so the pages are flushed by {@link PoiExcelPageFlusher} as the rows are converted by the
+ * task thread. the number of batches in process is bounded, so the reader waits when the converters or the output
+ * are slow.
+ * </p>
+ * <p>
+ * the converters of a sheet share the sheet bean (and the indexes of the merged regions). the column options are
+ * resolved by the reader thread when the converters are created.
+ * </p>
+ */
+public class PoiExcelPipeline {
+	private final Logger log = Exec.getLogger(getClass());
+
+	// rows per batch
+	private static final int BATCH_ROWS = 1024;
+
+	private final PoiExcelParserPlugin plugin;
+	private final PluginTask task;
+	private final Schema schema;
+	private final int threads;
+
+	private final BlockingQueue<Batch> batchQueue;
+
+	public PoiExcelPipeline(PoiExcelParserPlugin plugin, PluginTask task, Schema schema, int threads) {
+		this.plugin = plugin;
+		this.task = task;
+		this.schema = schema;
+		this.threads = threads;
+		this.batchQueue = new ArrayBlockingQueue<>(threads * 2);
+	}
+
+	/**
+	 * the converters share the sheet. the parts which are read lazily (such as the streaming sheet and the comments)
+	 * are not shared.
+	 *
+	 * @return the reason if the sheet cannot be read by the pipeline. null if it can
+	 */
+	public static String getUnsupportedReason(PoiExcelSheetBean sheetBean, Sheet sheet) {
+		if (sheetBean.getRecordType() != RecordType.ROW) {
+			return "record_type=" + sheetBean.getRecordType().name().toLowerCase();
+		}
+		boolean streaming = sheet instanceof StreamingSheet;
+		// the first row of the merged region is read by random access
+		boolean merged = streaming && !sheet.getMergedRegions().isEmpty();
+		for (PoiExcelColumnBean bean : sheetBean.getColumnBeans()) {
+			switch (bean.getValueType()) {
+			case CELL_COMMENT:
+				return "value=cell_comment";
+			case CELL_FORMULA:
+				if (streaming) {
+					return "value=cell_formula";
+				}
+				break;
+			default:
+				break;
+			}
+			if (streaming) {
+				if (bean.getCellAddress() != null) {
+					return "cell_address";
+				}
+				if (merged && bean.getSearchMergedCell() != SearchMergedCell.NONE) {
+					return "search_merged_cell";
+				}
+			}
+		}
+		return null;
+	}
+
+	public void run(List<Sheet> sheets, final int startRowIndex, final int endRowIndex, PageOutput output) {
+		log.info("pipeline_threads={}", threads);
+
+		ExecutorService converterExecutor = Executors.newFixedThreadPool(threads, new PipelineThreadFactory(
+				"converter"));
+		ExecutorService readerExecutor = Executors.newSingleThreadExecutor(new PipelineThreadFactory("reader"));
+		List<ConverterPool> pools = new ArrayList<>(sheets.size());
+		for (Sheet sheet : sheets) {
+			pools.add(new ConverterPool(sheet));
+		}
+		PoiExcelPageFlusher flusher = new PoiExcelPageFlusher(task, output);
+		try (PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, flusher)) {
+			flusher.setPageBuilder(pageBuilder);
+
+			// the threads inherit the Exec session of the task thread
+			Future<Void> readerFuture = readerExecutor.submit(new Reader(pools, startRowIndex, endRowIndex,
+					converterExecutor));
+			readerExecutor.shutdown();
+
+			for (;;) {
+				Batch batch = take(batchQueue);
+				if (batch.pool == null) {
+					getResult(readerFuture);
+					break;
+				}
+				if (batch.first) {
+					flusher.startSheet();
+				}
+				for (Object[] values : getResult(batch.future)) {
+					setValues(pageBuilder, values);
+					pageBuilder.addRecord();
+					flusher.addRecord();
+				}
+				if (batch.last) {
+					flusher.endSheet(batch.pool.sheet.getSheetName());
+					batch.pool.close();
+				}
+			}
+			pageBuilder.finish();
+		} finally {
+			// stop the reader and the converters (if an error occurred)
+			readerExecutor.shutdownNow();
+			converterExecutor.shutdownNow();
+			cancelBatches();
+			awaitTermination(readerExecutor);
+			awaitTermination(converterExecutor);
+			cancelBatches();
+			for (ConverterPool pool : pools) {
+				pool.close();
+			}
+		}
+	}
+
+	private void setValues(PageBuilder pageBuilder, Object[] values) {
+		for (Column column : schema.getColumns()) {
+			Object value = values[column.getIndex()];
+			if (value == null) {
+				pageBuilder.setNull(column);
+			} else if (value instanceof Boolean) {
+				pageBuilder.setBoolean(column, (Boolean) value);
+			} else if (value instanceof Long) {
+				pageBuilder.setLong(column, (Long) value);
+			} else if (value instanceof Double) {
+				pageBuilder.setDouble(column, (Double) value);
+			} else if (value instanceof String) {
+				pageBuilder.setString(column, (String) value);
+			} else {
+				pageBuilder.setTimestamp(column, (Timestamp) value);
+			}
+		}
+	}
+
+	private class Reader implements Callable<Void> {
+		private final List<ConverterPool> pools;
+		private final int startRowIndex;
+		private final int endRowIndex;
+		private final ExecutorService converterExecutor;
+
+		public Reader(List<ConverterPool> pools, int startRowIndex, int endRowIndex, ExecutorService converterExecutor) {
+			this.pools = pools;
+			this.startRowIndex = startRowIndex;
+			this.endRowIndex = endRowIndex;
+			this.converterExecutor = converterExecutor;
+		}
+
+		@Override
+		public Void call() throws InterruptedException {
+			try {
+				for (ConverterPool pool : pools) {
+					readSheet(pool);
+				}
+			} finally {
+				batchQueue.put(new Batch(null, null, false, true));
+			}
+			return null;
+		}
+
+		private void readSheet(ConverterPool pool) throws InterruptedException {
+			Sheet sheet = pool.sheet;
+			log.info("sheet={}", sheet.getSheetName());
+			PoiExcelSheetBean sheetBean = new PoiExcelSheetBean(task, schema, sheet);
+			// the batches are converted in parallel
+			sheetBean.setRowsOutOfOrder();
+			if (sheet instanceof StreamingSheet) {
+				plugin.prepareStreamingSheet((StreamingSheet) sheet, sheetBean);
+			}
+			pool.initialize(sheetBean);
+
+			PoiExcelRecordRow record = (PoiExcelRecordRow) sheetBean.getRecordType().newPoiExcelRecord();
+			record.setRowRange(startRowIndex, endRowIndex);
+			record.initialize(sheetBean, sheet, sheetBean.getSkipHeaderLines());
+
+			boolean first = true;
+			List<Row> rows = new ArrayList<>(BATCH_ROWS);
+			for (; record.exists(); record.moveNext()) {
+				rows.add(record.getCurrentRow());
+				if (rows.size() >= BATCH_ROWS) {
+					submit(new Batch(pool, rows, first, false));
+					first = false;
+					rows = new ArrayList<>(BATCH_ROWS);
+				}
+			}
+			// the merged regions are released by the task thread after the last batch is converted
+			submit(new Batch(pool, rows, first, true));
+		}
+
+		private void submit(Batch batch) throws InterruptedException {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			batch.future = converterExecutor.submit(batch);
+			batchQueue.put(batch);
+		}
+	}
+
+	private static class Batch implements Callable<List<Object[]>> {
+		final ConverterPool pool; // null means the end of the sheets
+		final List<Row> rows;
+		final boolean first; // the first batch of the sheet
+		final boolean last; // the last batch of the sheet
+		Future<List<Object[]>> future;
+
+		public Batch(ConverterPool pool, List<Row> rows, boolean first, boolean last) {
+			this.pool = pool;
+			this.rows = rows;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		public List<Object[]> call() throws InterruptedException {
+			Converter converter = pool.take();
+			try {
+				return converter.convert(rows);
+			} finally {
+				pool.put(converter);
+			}
+		}
+	}
+
+	private class ConverterPool {
+		final Sheet sheet;
+		private PoiExcelSheetBean sheetBean;
+		private final List<Converter> converters = new ArrayList<>(threads);
+		private final BlockingQueue<Converter> idle = new ArrayBlockingQueue<>(threads);
+
+		public ConverterPool(Sheet sheet) {
+			this.sheet = sheet;
+		}
+
+		// called by the reader thread before reading the sheet
+		public synchronized void initialize(PoiExcelSheetBean sheetBean) {
+			this.sheetBean = sheetBean;
+			for (int i = 0; i < threads; i++) {
+				Converter converter = new Converter(sheet, sheetBean);
+				converters.add(converter);
+				idle.add(converter);
+			}
+		}
+
+		public Converter take() throws InterruptedException {
+			return idle.take();
+		}
+
+		public void put(Converter converter) {
+			idle.add(converter);
+		}
+
+		public synchronized void close() {
+			for (Converter converter : converters) {
+				converter.release();
+			}
+			converters.clear();
+			if (sheetBean != null) {
+				sheetBean.releaseMergedRegionFinder();
+				sheetBean = null;
+			}
+		}
+	}
+
+	private class Converter {
+		private final RecordBuffer recordBuffer;
+		private final PoiExcelColumnVisitor visitor;
+		private final PoiExcelVisitorValue visitorValue;
+		private final PoiExcelRecordFixedRow record;
+		private final PoiExcelColumnExtractor[] extractors;
+		private final int clearInterval;
+		private int evaluateCount;
+
+		public Converter(Sheet sheet, PoiExcelSheetBean sheetBean) {
+			this.recordBuffer = new RecordBuffer(schema);
+			// the formula evaluator is created per converter when a formula is evaluated (it is not thread-safe)
+			this.visitorValue = new PoiExcelVisitorValue(task, sheet, recordBuffer, sheetBean);
+			PoiExcelVisitorFactory factory = plugin.newPoiExcelVisitorFactory(visitorValue);
+			this.visitor = factory.getPoiExcelColumnVisitor();
+			// formula_cache_clear=never is applied per converter
+			this.clearInterval = FormulaCacheClear.of(task.getFormulaCacheClear()).getInterval();
+
+			this.record = new PoiExcelRecordFixedRow();
+			record.initialize(sheetBean, sheet, sheetBean.getSkipHeaderLines());
+			visitor.setRecord(record);
+			this.extractors = visitor.createExtractors(schema);
+		}
+
+		public List<Object[]> convert(List<Row> rows) {
+			List<Object[]> records = new ArrayList<>(rows.size());
+			recordBuffer.setRecords(records);
+			for (Row row : rows) {
+				record.setRow(row);
+				record.logStart();
+
+				visitor.extract(extractors); // use record
+				recordBuffer.addRecord();
+
+				if (clearInterval > 0 && ++evaluateCount >= clearInterval) {
+					visitorValue.clearFormulaCache();
+					evaluateCount = 0;
+				}
+
+				record.logEnd();
+			}
+			recordBuffer.setRecords(null);
+			record.setRow(null);
+			return records;
+		}
+
+		public void release() {
+			recordBuffer.close();
+		}
+	}
+
+	/**
+	 * keeps the values of the records instead of writing them to a page. (the visitors write the values to
+	 * PageBuilder)
+	 */
+	private static class RecordBuffer extends PageBuilder {
+		private final int columnCount;
+		private List<Object[]> records;
+		private Object[] values;
+
+		public RecordBuffer(Schema schema) {
+			super(Exec.getBufferAllocator(), schema, NO_OUTPUT);
+			this.columnCount = schema.getColumnCount();
+			this.values = new Object[columnCount];
+		}
+
+		public void setRecords(List<Object[]> records) {
+			this.records = records;
+		}
+
+		@Override
+		public void setNull(Column column) {
+			values[column.getIndex()] = null;
+		}
+
+		@Override
+		public void setNull(int columnIndex) {
+			values[columnIndex] = null;
+		}
+
+		@Override
+		public void setBoolean(Column column, boolean value) {
+			values[column.getIndex()] = value;
+		}
+
+		@Override
+		public void setBoolean(int columnIndex, boolean value) {
+			values[columnIndex] = value;
+		}
+
+		@Override
+		public void setLong(Column column, long value) {
+			values[column.getIndex()] = value;
+		}
+
+		@Override
+		public void setLong(int columnIndex, long value) {
+			values[columnIndex] = value;
+		}
+
+		@Override
+		public void setDouble(Column column, double value) {
+			values[column.getIndex()] = value;
+		}
+
+		@Override
+		public void setDouble(int columnIndex, double value) {
+			values[columnIndex] = value;
+		}
+
+		@Override
+		public void setString(Column column, String value) {
+			values[column.getIndex()] = value;
+		}
+
+		@Override
+		public void setString(int columnIndex, String value) {
+			values[columnIndex] = value;
+		}
+
+		@Override
+		public void setTimestamp(Column column, Timestamp value) {
+			values[column.getIndex()] = value;
+		}
+
+		@Override
+		public void setTimestamp(int columnIndex, Timestamp value) {
+			values[columnIndex] = value;
+		}
+
+		@Override
+		public void addRecord() {
+			records.add(values);
+			this.values = new Object[columnCount];
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void finish() {
+		}
+	}
+
+	private static final PageOutput NO_OUTPUT = new PageOutput() {
+
+		@Override
+		public void add(Page page) {
+			page.release();
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	private static <T> T take(BlockingQueue<T> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static <T> T getResult(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private void cancelBatches() {
+		for (Batch batch; (batch = batchQueue.poll()) != null;) {
+			Future<List<Object[]>> future = batch.future;
+			if (future != null) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.info("waiting for the pipeline threads to stop");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class PipelineThreadFactory implements ThreadFactory {
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+		private final String name;
+		private final AtomicInteger count = new AtomicInteger();
+
+		public PipelineThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = factory.newThread(r);
+			thread.setName("poi_excel-" + name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package org.embulk.parser.poi_excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
+import org.embulk.parser.poi_excel.reader.ReaderType;
+import org.embulk.spi.Exec;
+import org.embulk.spi.util.FileInputInputStream;
+import org.slf4j.Logger;
+
+/**
+ * spool and open the next files by a background thread while the current file is read (prefetch_files).
+ * <p>
+ * the input is read only by the background thread. at most prefetch_files workbooks are opened ahead of the file
+ * being read.
+ * </p>
+ */
+public class PoiExcelPrefetcher implements AutoCloseable {
+	private final Logger log = Exec.getLogger(getClass());
+
+	private final PoiExcelParserPlugin plugin;
+	private final ReaderType readerType;
+	private final boolean spoolFile;
+	private final boolean parallelLoad;
+	private final FileInputInputStream is;
+	private final int files;
+
+	private final Semaphore permits;
+	private final BlockingQueue<PrefetchedFile> queue = new LinkedBlockingQueue<>();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new PrefetchThreadFactory());
+	private Future<Void> future;
+	private boolean end;
+
+	public PoiExcelPrefetcher(PoiExcelParserPlugin plugin, PluginTask task, FileInputInputStream is, int files) {
+		this.plugin = plugin;
+		this.readerType = ReaderType.of(task.getReader());
+		this.spoolFile = task.getSpoolFile();
+		this.parallelLoad = task.getParallelLoad();
+		this.is = is;
+		this.files = files;
+		this.permits = new Semaphore(files);
+	}
+
+	public void start() {
+		log.info("prefetch_files={}", files);
+
+		// the background thread inherits the Exec session of the task thread
+		future = executor.submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws InterruptedException, IOException {
+				prefetch();
+				return null;
+			}
+		});
+		executor.shutdown();
+	}
+
+	/**
+	 * @return next opened file. null if there are no more files
+	 */
+	public PrefetchedFile next() {
+		if (end) {
+			return null;
+		}
+
+		PrefetchedFile file;
+		try {
+			file = queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		if (file.workbook == null) {
+			end = true;
+			checkError();
+			return null;
+		}
+		permits.release();
+		return file;
+	}
+
+	private void prefetch() throws InterruptedException, IOException {
+		try {
+			for (;;) {
+				permits.acquire();
+				if (!is.nextFile()) {
+					break;
+				}
+				queue.add(open());
+			}
+		} finally {
+			queue.add(new PrefetchedFile(null, null));
+		}
+	}
+
+	private PrefetchedFile open() throws IOException {
+		File file = null;
+		boolean success = false;
+		try {
+			Workbook workbook;
+			if (spoolFile) {
+				file = plugin.spool(is);
+				workbook = readerType.open(file, parallelLoad);
+			} else {
+				workbook = readerType.open(is, parallelLoad);
+			}
+			success = true;
+			return new PrefetchedFile(workbook, file);
+		} finally {
+			if (!success) {
+				new PrefetchedFile(null, file).close();
+			}
+		}
+	}
+
+	private void checkError() {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	@Override
+	public void close() {
+		// stop the background thread (if an error occurred), and close the files which are not read
+		executor.shutdownNow();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.info("waiting for the prefetch thread to stop");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (PrefetchedFile file; (file = queue.poll()) != null;) {
+			file.close();
+		}
+	}
+
+	public class PrefetchedFile {
+		private final Workbook workbook; // null means the end of the input
+		private final File file; // spooled file
+
+		PrefetchedFile(Workbook workbook, File file) {
+			this.workbook = workbook;
+			this.file = file;
+		}
+
+		public Workbook getWorkbook() {
+			return workbook;
+		}
+
+		public void close() {
+			if (workbook != null) {
+				try {
+					workbook.close();
+				} catch (IOException e) {
+					log.warn("workbook close error", e);
+				}
+			}
+			if (file != null && !file.delete()) {
+				log.warn("temporary file delete error. file={}", file);
+			}
+		}
+	}
+
+	private static class PrefetchThreadFactory implements ThreadFactory {
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = factory.newThread(r);
+			thread.setName("poi_excel-prefetch");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -12,9 +12,11 @@ import org.embulk.parser.poi_excel.PoiExcelParserPlugin.ColumnCommonOptionTask;
 import org.embulk.parser.poi_excel.PoiExcelParserPlugin.ColumnOptionTask;
 import org.embulk.parser.poi_excel.PoiExcelParserPlugin.FormulaReplaceTask;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean.ErrorStrategy.Strategy;
+import org.embulk.parser.poi_excel.bean.util.FormulaReplace;
 import org.embulk.parser.poi_excel.bean.util.PoiExcelCellAddress;
 import org.embulk.parser.poi_excel.bean.util.SearchMergedCell;
 import org.embulk.parser.poi_excel.visitor.util.MergedRegionFinder;
+import org.embulk.parser.poi_excel.visitor.util.NumericFormatter;
 import org.embulk.spi.Column;
 
 import com.google.common.base.Optional;
@@ -292,6 +294,49 @@ public class PoiExcelColumnBean {
 		return numericFormat.get();
 	}
 
+	private NumericFormatter numericFormatter;
+
+	public NumericFormatter getNumericFormatter() {
+		if (numericFormatter == null) {
+			numericFormatter = new NumericFormatter(getNumericFormat());
+		}
+		return numericFormatter;
+	}
+
+	private CacheValue<Boolean> numericLenient = new CacheValue<Boolean>() {
+
+		@Override
+		protected Optional<Boolean> getTaskValue(ColumnCommonOptionTask task) {
+			return task.getNumericLenient();
+		}
+
+		@Override
+		protected Boolean getDefaultValue() {
+			return false;
+		}
+	};
+
+	public boolean getNumericLenient() {
+		return numericLenient.get();
+	}
+
+	private CacheValue<Boolean> numericRawText = new CacheValue<Boolean>() {
+
+		@Override
+		protected Optional<Boolean> getTaskValue(ColumnCommonOptionTask task) {
+			return task.getNumericRawText();
+		}
+
+		@Override
+		protected Boolean getDefaultValue() {
+			return false;
+		}
+	};
+
+	public boolean getNumericRawText() {
+		return numericRawText.get();
+	}
+
 	private CacheValue<SearchMergedCell> searchMergedCell = new CacheValue<SearchMergedCell>() {
 
 		@Override
@@ -330,13 +375,8 @@ public class PoiExcelColumnBean {
 		return searchMergedCell.get();
 	}
 
-	private MergedRegionFinder mergedRegionFinder;
-
 	public MergedRegionFinder getMergedRegionFinder() {
-		if (mergedRegionFinder == null) {
-			this.mergedRegionFinder = getSearchMergedCell().getMergedRegionFinder();
-		}
-		return mergedRegionFinder;
+		return sheetBean.getMergedRegionFinder(getSearchMergedCell());
 	}
 
 	public enum FormulaHandling {
@@ -374,20 +414,24 @@ public class PoiExcelColumnBean {
 		return formulaHandling.get();
 	}
 
-	private CacheValue<List<FormulaReplaceTask>> formulaReplace = new CacheValue<List<FormulaReplaceTask>>() {
+	private CacheValue<FormulaReplace> formulaReplace = new CacheValue<FormulaReplace>() {
 
 		@Override
-		protected Optional<List<FormulaReplaceTask>> getTaskValue(ColumnCommonOptionTask task) {
-			return task.getFormulaReplace();
+		protected Optional<FormulaReplace> getTaskValue(ColumnCommonOptionTask task) {
+			Optional<List<FormulaReplaceTask>> option = task.getFormulaReplace();
+			if (option.isPresent()) {
+				return Optional.of(FormulaReplace.of(option.get()));
+			}
+			return Optional.absent();
 		}
 
 		@Override
-		protected List<FormulaReplaceTask> getDefaultValue() {
-			return Collections.emptyList();
+		protected FormulaReplace getDefaultValue() {
+			return FormulaReplace.of(Collections.<FormulaReplaceTask> emptyList());
 		}
 	};
 
-	public List<FormulaReplaceTask> getFormulaReplace() {
+	public FormulaReplace getFormulaReplace() {
 		return formulaReplace.get();
 	}
 
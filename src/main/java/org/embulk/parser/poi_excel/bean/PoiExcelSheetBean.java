@@ -1,6 +1,7 @@
 package org.embulk.parser.poi_excel.bean;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,9 @@ import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
 import org.embulk.parser.poi_excel.PoiExcelParserPlugin.SheetCommonOptionTask;
 import org.embulk.parser.poi_excel.PoiExcelParserPlugin.SheetOptionTask;
 import org.embulk.parser.poi_excel.bean.record.RecordType;
+import org.embulk.parser.poi_excel.bean.util.SearchMergedCell;
+import org.embulk.parser.poi_excel.visitor.util.MergedRegionFinder;
+import org.embulk.parser.poi_excel.visitor.util.MergedRegionSweepLine;
 import org.embulk.spi.Column;
 import org.embulk.spi.ColumnConfig;
 import org.embulk.spi.Schema;
@@ -105,6 +109,28 @@ public class PoiExcelSheetBean {
 		return 0;
 	}
 
+	public boolean getSkipEmptyRows() {
+		List<SheetCommonOptionTask> list = getSheetOption();
+		for (SheetCommonOptionTask sheetTask : list) {
+			Optional<Boolean> value = sheetTask.getSkipEmptyRows();
+			if (value.isPresent()) {
+				return value.get();
+			}
+		}
+		return false;
+	}
+
+	public int getStopOnEmptyRows() {
+		List<SheetCommonOptionTask> list = getSheetOption();
+		for (SheetCommonOptionTask sheetTask : list) {
+			Optional<Integer> value = sheetTask.getStopOnEmptyRows();
+			if (value.isPresent()) {
+				return value.get();
+			}
+		}
+		return 0;
+	}
+
 	public final List<PoiExcelColumnBean> getColumnBeans() {
 		return columnBeanList;
 	}
@@ -113,4 +139,49 @@ public class PoiExcelSheetBean {
 		List<PoiExcelColumnBean> list = getColumnBeans();
 		return list.get(column.getIndex());
 	}
+
+	// shared by the columns of this sheet
+	private final Map<SearchMergedCell, MergedRegionFinder> mergedRegionFinderMap = new EnumMap<>(
+			SearchMergedCell.class);
+
+	public synchronized MergedRegionFinder getMergedRegionFinder(SearchMergedCell search) {
+		MergedRegionFinder finder = mergedRegionFinderMap.get(search);
+		if (finder == null) {
+			finder = search.createMergedRegionFinder();
+			mergedRegionFinderMap.put(search, finder);
+		}
+		return finder;
+	}
+
+	private MergedRegionSweepLine mergedRegionSweepLine;
+	private boolean rowsInOrder = true;
+
+	/**
+	 * the rows are not read in ascending order (pipeline). the sweep line is not used.
+	 */
+	public synchronized void setRowsOutOfOrder() {
+		this.rowsInOrder = false;
+		this.mergedRegionSweepLine = null;
+	}
+
+	/**
+	 * @return sweep line of merged regions (null if record_type is not row, or the rows are not read in order)
+	 */
+	public synchronized MergedRegionSweepLine getMergedRegionSweepLine() {
+		if (mergedRegionSweepLine == null) {
+			if (getRecordType() != RecordType.ROW || !rowsInOrder) {
+				return null;
+			}
+			this.mergedRegionSweepLine = new MergedRegionSweepLine(sheet);
+		}
+		return mergedRegionSweepLine;
+	}
+
+	/**
+	 * release the indexes of merged regions when the sheet is finished.
+	 */
+	public synchronized void releaseMergedRegionFinder() {
+		mergedRegionFinderMap.clear();
+		this.mergedRegionSweepLine = null;
+	}
 }
@@ -4,20 +4,51 @@ import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellReference;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.bean.PoiExcelSheetBean;
 
 public abstract class PoiExcelRecord {
 
 	// loop record
 
+	private PoiExcelSheetBean sheetBean;
 	private Sheet sheet;
 
-	public final void initialize(Sheet sheet, int skipHeaderLines) {
+	private int startRowIndex = 0;
+	private int endRowIndex = Integer.MAX_VALUE;
+
+	/**
+	 * limit the rows of the loop. (record_type=row)
+	 *
+	 * @param startRowIndex
+	 *            first row index (0 origin)
+	 * @param endRowIndex
+	 *            last row index + 1
+	 */
+	public final void setRowRange(int startRowIndex, int endRowIndex) {
+		this.startRowIndex = startRowIndex;
+		this.endRowIndex = endRowIndex;
+	}
+
+	protected final int getStartRowIndex() {
+		return startRowIndex;
+	}
+
+	protected final int getEndRowIndex() {
+		return endRowIndex;
+	}
+
+	public final void initialize(PoiExcelSheetBean sheetBean, Sheet sheet, int skipHeaderLines) {
+		this.sheetBean = sheetBean;
 		this.sheet = sheet;
 		initializeLoop(skipHeaderLines);
 	}
 
 	protected abstract void initializeLoop(int skipHeaderLines);
 
+	public final PoiExcelSheetBean getSheetBean() {
+		return sheetBean;
+	}
+
 	public final Sheet getSheet() {
 		return sheet;
 	}
@@ -1,5 +1,11 @@
 package org.embulk.parser.poi_excel.bean.record;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -13,8 +19,14 @@ public class PoiExcelRecordColumn extends PoiExcelRecord {
 	private int maxColumnIndex;
 	private int currentColumnIndex;
 
+	/** cells of the rows which are referenced by the column beans. index=Embulk column index */
+	private Cell[][] beanCells;
+
 	@Override
 	protected void initializeLoop(int skipHeaderLines) {
+		Map<Integer, List<PoiExcelColumnBean>> beanMap = getReferencedRows();
+		this.beanCells = new Cell[getSheetBean().getColumnBeans().size()][];
+
 		int minColumnIndex = Integer.MAX_VALUE;
 		maxColumnIndex = 0;
 		Sheet sheet = getSheet();
@@ -23,7 +35,28 @@ public class PoiExcelRecordColumn extends PoiExcelRecord {
 			if (firstIndex >= 0) {
 				minColumnIndex = Math.min(minColumnIndex, firstIndex);
 			}
-			maxColumnIndex = Math.max(maxColumnIndex, row.getLastCellNum());
+			int lastIndex = row.getLastCellNum();
+			maxColumnIndex = Math.max(maxColumnIndex, lastIndex);
+
+			List<PoiExcelColumnBean> beans = beanMap.get(row.getRowNum());
+			if (beans != null && lastIndex > 0) {
+				Cell[] cells = new Cell[lastIndex];
+				for (Iterator<Cell> i = row.cellIterator(); i.hasNext();) {
+					Cell cell = i.next();
+					cells[cell.getColumnIndex()] = cell;
+				}
+				for (PoiExcelColumnBean bean : beans) {
+					beanCells[bean.getColumn().getIndex()] = cells;
+				}
+			}
+		}
+		for (List<PoiExcelColumnBean> beans : beanMap.values()) {
+			for (PoiExcelColumnBean bean : beans) {
+				if (beanCells[bean.getColumn().getIndex()] == null) {
+					// the row does not exist
+					beanCells[bean.getColumn().getIndex()] = new Cell[0];
+				}
+			}
 		}
 
 		this.currentColumnIndex = maxColumnIndex;
@@ -40,6 +73,24 @@ public class PoiExcelRecordColumn extends PoiExcelRecord {
 		}
 	}
 
+	// key=row index
+	private Map<Integer, List<PoiExcelColumnBean>> getReferencedRows() {
+		Map<Integer, List<PoiExcelColumnBean>> map = new HashMap<>();
+		for (PoiExcelColumnBean bean : getSheetBean().getColumnBeans()) {
+			if (bean.getCellAddress() != null || !bean.getValueType().useCell(RecordType.COLUMN)) {
+				continue;
+			}
+			int rowIndex = bean.getColumnIndex();
+			List<PoiExcelColumnBean> list = map.get(rowIndex);
+			if (list == null) {
+				list = new ArrayList<>();
+				map.put(rowIndex, list);
+			}
+			list.add(bean);
+		}
+		return map;
+	}
+
 	@Override
 	public boolean exists() {
 		return currentColumnIndex < maxColumnIndex;
@@ -69,6 +120,12 @@ public class PoiExcelRecordColumn extends PoiExcelRecord {
 
 	@Override
 	public Cell getCell(PoiExcelColumnBean bean) {
+		Cell[] cells = beanCells[bean.getColumn().getIndex()];
+		if (cells != null) {
+			int columnIndex = getColumnIndex(bean);
+			return (columnIndex < cells.length) ? cells[columnIndex] : null;
+		}
+
 		int rowIndex = getRowIndex(bean);
 		Row row = getSheet().getRow(rowIndex);
 		if (row == null) {
@@ -0,0 +1,61 @@
+package org.embulk.parser.poi_excel.bean.record;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.spi.Exec;
+import org.slf4j.Logger;
+
+/**
+ * record of the row which is read by the other record (record_type=row, pipeline).
+ */
+public class PoiExcelRecordFixedRow extends PoiExcelRecord {
+	private final Logger log = Exec.getLogger(getClass());
+
+	private Row currentRow;
+
+	@Override
+	protected void initializeLoop(int skipHeaderLines) {
+		this.currentRow = null;
+	}
+
+	public void setRow(Row row) {
+		this.currentRow = row;
+	}
+
+	@Override
+	public boolean exists() {
+		return currentRow != null;
+	}
+
+	@Override
+	public void moveNext() {
+		this.currentRow = null;
+	}
+
+	@Override
+	protected void logStartEnd(String part) {
+		assert currentRow != null;
+		if (log.isDebugEnabled()) {
+			log.debug("row({}) {}", currentRow.getRowNum(), part);
+		}
+	}
+
+	@Override
+	public int getRowIndex(PoiExcelColumnBean bean) {
+		assert currentRow != null;
+		return currentRow.getRowNum();
+	}
+
+	@Override
+	public int getColumnIndex(PoiExcelColumnBean bean) {
+		return bean.getColumnIndex();
+	}
+
+	@Override
+	public Cell getCell(PoiExcelColumnBean bean) {
+		assert currentRow != null;
+		int columnIndex = getColumnIndex(bean);
+		return currentRow.getCell(columnIndex);
+	}
+}
@@ -1,10 +1,17 @@
 package org.embulk.parser.poi_excel.bean.record;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.bean.PoiExcelSheetBean;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.parser.poi_excel.visitor.util.MergedRegionFinder;
 import org.embulk.spi.Exec;
 import org.slf4j.Logger;
 
@@ -14,15 +21,44 @@ public class PoiExcelRecordRow extends PoiExcelRecord {
 	private Iterator<Row> rowIterator;
 	private Row currentRow;
 
+	private boolean skipEmptyRows;
+	private int stopOnEmptyRows;
+	private List<PoiExcelColumnBean> valueBeans;
+	private int lastValueRowIndex;
+
 	@Override
 	protected void initializeLoop(int skipHeaderLines) {
+		PoiExcelSheetBean sheetBean = getSheetBean();
+		this.skipEmptyRows = sheetBean.getSkipEmptyRows();
+		this.stopOnEmptyRows = sheetBean.getStopOnEmptyRows();
+		if (skipEmptyRows || stopOnEmptyRows > 0) {
+			this.valueBeans = new ArrayList<>();
+			for (PoiExcelColumnBean bean : sheetBean.getColumnBeans()) {
+				if (bean.getCellAddress() == null && bean.getValueType().useCell(RecordType.ROW)) {
+					valueBeans.add(bean);
+				}
+			}
+			if (valueBeans.isEmpty()) {
+				this.valueBeans = null;
+			}
+		}
+		int firstRowIndex = Math.max(skipHeaderLines, getStartRowIndex());
+		this.lastValueRowIndex = firstRowIndex - 1;
+		if (getSheet() instanceof StreamingSheet) {
+			// the skipped rows (the header and the rows of the other tasks) are not decoded
+			((StreamingSheet) getSheet()).setFirstRowIndex(firstRowIndex);
+		}
+
 		this.rowIterator = getSheet().iterator();
 		this.currentRow = null;
-		while (rowIterator.hasNext()) {
-			Row row = rowIterator.next();
+		for (;;) {
+			Row row = nextRow();
+			if (row == null) {
+				break;
+			}
 
 			int rowIndex = row.getRowNum();
-			if (rowIndex < skipHeaderLines) {
+			if (rowIndex < firstRowIndex) {
 				if (log.isDebugEnabled()) {
 					log.debug("row({}) skipped", rowIndex);
 				}
@@ -32,6 +68,7 @@ public class PoiExcelRecordRow extends PoiExcelRecord {
 			this.currentRow = row;
 			break;
 		}
+		skipEmptyRows();
 	}
 
 	@Override
@@ -41,10 +78,95 @@ public class PoiExcelRecordRow extends PoiExcelRecord {
 
 	@Override
 	public void moveNext() {
+		this.currentRow = nextRow();
+		skipEmptyRows();
+	}
+
+	public Row getCurrentRow() {
+		return currentRow;
+	}
+
+	private Row nextRow() {
 		if (rowIterator.hasNext()) {
-			this.currentRow = rowIterator.next();
-		} else {
-			this.currentRow = null;
+			Row row = rowIterator.next();
+			if (row.getRowNum() < getEndRowIndex()) {
+				return row;
+			}
+		}
+		return null;
+	}
+
+	// skip_empty_rows, stop_on_empty_rows
+	private void skipEmptyRows() {
+		if (valueBeans == null) {
+			return;
+		}
+
+		while (currentRow != null) {
+			int rowIndex = currentRow.getRowNum();
+			boolean empty = isEmptyRow(currentRow);
+			if (stopOnEmptyRows > 0) {
+				int emptyRows = empty ? rowIndex - lastValueRowIndex : rowIndex - lastValueRowIndex - 1;
+				if (emptyRows >= stopOnEmptyRows) {
+					if (log.isDebugEnabled()) {
+						log.debug("row({}) stop. empty rows={}", rowIndex, emptyRows);
+					}
+					this.currentRow = null;
+					return;
+				}
+			}
+			if (!empty) {
+				this.lastValueRowIndex = rowIndex;
+				return;
+			}
+			if (!skipEmptyRows) {
+				return;
+			}
+
+			if (log.isTraceEnabled()) {
+				log.trace("row({}) skipped. empty row", rowIndex);
+			}
+			this.currentRow = nextRow();
+		}
+	}
+
+	private boolean isEmptyRow(Row row) {
+		for (PoiExcelColumnBean bean : valueBeans) {
+			Cell cell = row.getCell(bean.getColumnIndex());
+			if (cell == null) {
+				continue;
+			}
+			if (cell.getCellTypeEnum() == CellType.BLANK) {
+				// the value of the merged cell
+				MergedRegionFinder finder = bean.getMergedRegionFinder();
+				CellRangeAddress region = finder.get(getSheet(), row.getRowNum(), cell.getColumnIndex());
+				if (region == null) {
+					continue;
+				}
+				Row firstRow = getSheet().getRow(region.getFirstRow());
+				if (firstRow == null) {
+					continue;
+				}
+				cell = firstRow.getCell(region.getFirstColumn());
+			}
+			if (hasValue(cell)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasValue(Cell cell) {
+		if (cell == null) {
+			return false;
+		}
+		switch (cell.getCellTypeEnum()) {
+		case BLANK:
+			return false;
+		case STRING:
+			return !cell.getStringCellValue().isEmpty();
+		default:
+			return true;
 		}
 	}
 
@@ -0,0 +1,63 @@
+package org.embulk.parser.poi_excel.bean.util;
+
+import java.text.MessageFormat;
+
+import org.embulk.config.ConfigException;
+
+/**
+ * when to clear the cached results of the FormulaEvaluator.
+ */
+public final class FormulaCacheClear {
+
+	public static enum Timing {
+		/** keep the cache through the workbook */
+		NEVER,
+		/** clear the cache at the start of each sheet */
+		SHEET,
+		/** clear the cache every N records */
+		RECORDS
+	}
+
+	private final Timing timing;
+	private final int interval;
+
+	private FormulaCacheClear(Timing timing, int interval) {
+		this.timing = timing;
+		this.interval = interval;
+	}
+
+	public Timing getTiming() {
+		return timing;
+	}
+
+	/**
+	 * @return number of records to clear the cache (when timing=RECORDS)
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	public static FormulaCacheClear of(String value) {
+		String s = value.trim();
+		for (Timing timing : Timing.values()) {
+			if (timing != Timing.RECORDS && timing.name().equalsIgnoreCase(s)) {
+				return new FormulaCacheClear(timing, 0);
+			}
+		}
+		try {
+			int interval = Integer.parseInt(s);
+			if (interval > 0) {
+				return new FormulaCacheClear(Timing.RECORDS, interval);
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		throw new ConfigException(MessageFormat.format(
+				"illegal formula_cache_clear={0}. expected=[never, sheet, number of records]", value));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FormulaCacheClear(%s, %d)", timing, interval);
+	}
+}
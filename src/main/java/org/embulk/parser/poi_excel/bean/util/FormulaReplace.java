@@ -0,0 +1,130 @@
+package org.embulk.parser.poi_excel.bean.util;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.poi.ss.util.CellReference;
+import org.embulk.config.ConfigException;
+import org.embulk.parser.poi_excel.PoiExcelParserPlugin.FormulaReplaceTask;
+
+/**
+ * compiled formula_replace.
+ */
+public class FormulaReplace {
+
+	private static final int CACHE_SIZE = 1024;
+
+	private static final FormulaReplace EMPTY = new FormulaReplace(Collections.<Rule> emptyList());
+
+	private static class Rule {
+		final Pattern pattern;
+		final String to;
+		final boolean useRow;
+		final boolean useColumn;
+
+		Rule(Pattern pattern, String to) {
+			this.pattern = pattern;
+			this.to = to;
+			this.useRow = to.contains("${row}");
+			this.useColumn = to.contains("${column}");
+		}
+
+		String replace(String formula, int rowIndex, int columnIndex) {
+			Matcher matcher = pattern.matcher(formula);
+			if (!matcher.find()) {
+				return formula;
+			}
+
+			String replacement = to;
+			if (useRow) {
+				replacement = replacement.replace("${row}", Integer.toString(rowIndex + 1));
+			}
+			if (useColumn) {
+				replacement = replacement.replace("${column}", CellReference.convertNumToColString(columnIndex + 1));
+			}
+			return matcher.replaceAll(replacement);
+		}
+	}
+
+	private final List<Rule> ruleList;
+	private final boolean cellDependent;
+	private final Map<String, String> cache;
+
+	private FormulaReplace(List<Rule> ruleList) {
+		this.ruleList = ruleList;
+
+		boolean dependent = false;
+		for (Rule rule : ruleList) {
+			dependent |= rule.useRow || rule.useColumn;
+		}
+		this.cellDependent = dependent;
+
+		this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+
+	public static FormulaReplace of(List<FormulaReplaceTask> list) {
+		if (list.isEmpty()) {
+			return EMPTY;
+		}
+
+		List<Rule> ruleList = new ArrayList<>(list.size());
+		for (FormulaReplaceTask task : list) {
+			Pattern pattern;
+			try {
+				pattern = Pattern.compile(task.getRegex());
+			} catch (PatternSyntaxException e) {
+				throw new ConfigException(MessageFormat.format("illegal formula_replace regex={0}", task.getRegex()), e);
+			}
+			ruleList.add(new Rule(pattern, task.getTo()));
+		}
+		return new FormulaReplace(ruleList);
+	}
+
+	public boolean isEmpty() {
+		return ruleList.isEmpty();
+	}
+
+	/**
+	 * @param formula
+	 *            original formula
+	 * @param rowIndex
+	 *            row index of the cell (for ${row})
+	 * @param columnIndex
+	 *            column index of the cell (for ${column})
+	 * @return replaced formula (same instance if not replaced)
+	 */
+	public String replace(String formula, int rowIndex, int columnIndex) {
+		if (cellDependent) {
+			return replaceFormula(formula, rowIndex, columnIndex);
+		}
+
+		String replaced = cache.get(formula);
+		if (replaced == null) {
+			replaced = replaceFormula(formula, rowIndex, columnIndex);
+			cache.put(formula, replaced);
+		}
+		return replaced;
+	}
+
+	private String replaceFormula(String formula, int rowIndex, int columnIndex) {
+		String s = formula;
+		for (Rule rule : ruleList) {
+			s = rule.replace(s, rowIndex, columnIndex);
+		}
+		return s.equals(formula) ? formula : s;
+	}
+}
@@ -6,6 +6,7 @@ import java.util.TreeMap;
 
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.embulk.parser.poi_excel.visitor.util.MergedRegionFinder;
+import org.embulk.parser.poi_excel.visitor.util.MergedRegionIntervalTree;
 import org.embulk.parser.poi_excel.visitor.util.MergedRegionList;
 import org.embulk.parser.poi_excel.visitor.util.MergedRegionMap;
 import org.embulk.parser.poi_excel.visitor.util.MergedRegionNothing;
@@ -56,16 +57,23 @@ public enum SearchMergedCell {
 				}
 			};
 		}
-	};
-
-	private MergedRegionFinder mergedRegionFinder;
-
-	public MergedRegionFinder getMergedRegionFinder() {
-		if (mergedRegionFinder == null) {
-			this.mergedRegionFinder = createMergedRegionFinder();
+	},
+	INTERVAL_TREE {
+		@Override
+		public MergedRegionFinder createMergedRegionFinder() {
+			return new MergedRegionIntervalTree();
 		}
-		return mergedRegionFinder;
-	}
+	},
+	/** MergedRegionSweepLine when record_type=row. the other cells (record_type=column, cell_address) use HASH_SEARCH */
+	SWEEP_LINE {
+		@Override
+		public MergedRegionFinder createMergedRegionFinder() {
+			return HASH_SEARCH.createMergedRegionFinder();
+		}
+	};
 
-	protected abstract MergedRegionFinder createMergedRegionFinder();
+	/**
+	 * @return new finder. (the index of the finder is held until the finder is released)
+	 */
+	public abstract MergedRegionFinder createMergedRegionFinder();
 }
\ No newline at end of file
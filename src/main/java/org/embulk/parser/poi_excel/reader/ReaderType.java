@@ -0,0 +1,145 @@
+package org.embulk.parser.poi_excel.reader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.embulk.config.ConfigException;
+import org.embulk.parser.poi_excel.reader.stream.hssf.HssfStreamingWorkbook;
+import org.embulk.parser.poi_excel.reader.stream.xssf.XssfStreamingWorkbook;
+
+public enum ReaderType {
+	/** POI usermodel (all cells are loaded into memory) */
+	USERMODEL {
+		@Override
+		public Workbook open(InputStream is) throws IOException {
+			try {
+				return WorkbookFactory.create(is);
+			} catch (EncryptedDocumentException | InvalidFormatException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public Workbook open(File file) throws IOException {
+			try {
+				return WorkbookFactory.create(file, null, true);
+			} catch (EncryptedDocumentException | InvalidFormatException e) {
+				throw new IOException(e);
+			}
+		}
+	},
+	/** read rows on demand */
+	STREAMING {
+		@Override
+		public Workbook open(InputStream is) throws IOException {
+			return open(is, false);
+		}
+
+		@Override
+		public Workbook open(InputStream is, boolean parallelLoad) throws IOException {
+			InputStream in = FileMagic.prepareToCheckMagic(is);
+			switch (FileMagic.valueOf(in)) {
+			case OOXML:
+				try {
+					return new XssfStreamingWorkbook(OPCPackage.open(in), parallelLoad);
+				} catch (InvalidFormatException e) {
+					throw new IOException(e);
+				}
+			case OLE2:
+				return new HssfStreamingWorkbook(new NPOIFSFileSystem(in));
+			default:
+				return USERMODEL.open(in);
+			}
+		}
+
+		@Override
+		public Workbook open(File file) throws IOException {
+			return open(file, false);
+		}
+
+		@Override
+		public Workbook open(File file, boolean parallelLoad) throws IOException {
+			FileMagic magic;
+			try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+				magic = FileMagic.valueOf(in);
+			}
+			switch (magic) {
+			case OOXML:
+				try {
+					return new XssfStreamingWorkbook(OPCPackage.open(file, PackageAccess.READ), parallelLoad);
+				} catch (InvalidFormatException e) {
+					throw new IOException(e);
+				}
+			case OLE2:
+				return new HssfStreamingWorkbook(new NPOIFSFileSystem(file, true), file);
+			default:
+				return USERMODEL.open(file);
+			}
+		}
+	};
+
+	public abstract Workbook open(InputStream is) throws IOException;
+
+	/**
+	 * open the workbook from the file. POI reads the file by random access instead of buffering it on the heap.
+	 *
+	 * @param file
+	 *            Excel file
+	 * @return workbook
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public abstract Workbook open(File file) throws IOException;
+
+	/**
+	 * @param is
+	 *            input stream
+	 * @param parallelLoad
+	 *            load the shared strings and the styles by the background threads (streaming, xlsx)
+	 * @return workbook
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public Workbook open(InputStream is, boolean parallelLoad) throws IOException {
+		return open(is);
+	}
+
+	/**
+	 * @param file
+	 *            Excel file
+	 * @param parallelLoad
+	 *            load the shared strings and the styles by the background threads (streaming, xlsx)
+	 * @return workbook
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public Workbook open(File file, boolean parallelLoad) throws IOException {
+		return open(file);
+	}
+
+	public static ReaderType of(String value) {
+		try {
+			return ReaderType.valueOf(value.toUpperCase());
+		} catch (Exception e) {
+			List<String> list = new ArrayList<>();
+			for (ReaderType s : ReaderType.values()) {
+				list.add(s.name().toLowerCase());
+			}
+			throw new ConfigException(MessageFormat.format("illegal reader={0}. expected={1}", value, list), e);
+		}
+	}
+}
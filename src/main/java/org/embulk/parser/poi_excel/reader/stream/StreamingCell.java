@@ -0,0 +1,342 @@
+package org.embulk.parser.poi_excel.reader.stream;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * read-only cell of {@link StreamingSheet}.
+ */
+public class StreamingCell implements Cell {
+
+	public interface FormulaSource {
+		public String getFormula(StreamingCell cell);
+	}
+
+	private final StreamingRow row;
+	private final int columnIndex;
+
+	private CellType cellType = CellType.BLANK;
+	private CellType cachedType;
+	private double numericValue;
+	private String numericText;
+	private boolean numericParsed = true;
+	private String stringValue;
+	private boolean booleanValue;
+	private byte errorValue;
+	private String formula;
+	private FormulaSource formulaSource;
+	private int styleIndex;
+
+	public StreamingCell(StreamingRow row, int columnIndex) {
+		this.row = row;
+		this.columnIndex = columnIndex;
+	}
+
+	// reader
+
+	public void setNumeric(double value) {
+		this.cellType = CellType.NUMERIC;
+		this.numericValue = value;
+		this.numericText = null;
+		this.numericParsed = true;
+	}
+
+	/**
+	 * set numeric value as written in the file. the text is parsed when {@link #getNumericCellValue()} is called.
+	 *
+	 * @param text
+	 *            decimal text
+	 */
+	public void setNumeric(String text) {
+		this.cellType = CellType.NUMERIC;
+		this.numericText = text;
+		this.numericParsed = false;
+	}
+
+	public void setString(String value) {
+		this.cellType = CellType.STRING;
+		this.stringValue = value;
+	}
+
+	public void setBoolean(boolean value) {
+		this.cellType = CellType.BOOLEAN;
+		this.booleanValue = value;
+	}
+
+	public void setError(byte value) {
+		this.cellType = CellType.ERROR;
+		this.errorValue = value;
+	}
+
+	/**
+	 * turn this cell into a formula cell. the value set before becomes the cached result.
+	 *
+	 * @param formula
+	 *            formula (without '=')
+	 */
+	public void setFormula(String formula) {
+		setFormula(formula, null);
+	}
+
+	public void setFormula(FormulaSource source) {
+		setFormula(null, source);
+	}
+
+	private void setFormula(String formula, FormulaSource source) {
+		if (cellType != CellType.FORMULA) {
+			// same as XSSFCell: a formula without cached value is numeric 0
+			this.cachedType = (cellType == CellType.BLANK) ? CellType.NUMERIC : cellType;
+			this.cellType = CellType.FORMULA;
+		}
+		this.formula = formula;
+		this.formulaSource = source;
+	}
+
+	public void setStyleIndex(int styleIndex) {
+		this.styleIndex = styleIndex;
+	}
+
+	public int getStyleIndex() {
+		return styleIndex;
+	}
+
+	// Cell
+
+	@Override
+	public int getColumnIndex() {
+		return columnIndex;
+	}
+
+	@Override
+	public int getRowIndex() {
+		return row.getRowNum();
+	}
+
+	@Override
+	public StreamingSheet getSheet() {
+		return row.getSheet();
+	}
+
+	@Override
+	public StreamingRow getRow() {
+		return row;
+	}
+
+	@Override
+	@Deprecated
+	public int getCellType() {
+		return getCellTypeEnum().getCode();
+	}
+
+	@Override
+	public CellType getCellTypeEnum() {
+		return cellType;
+	}
+
+	@Override
+	@Deprecated
+	public int getCachedFormulaResultType() {
+		return getCachedFormulaResultTypeEnum().getCode();
+	}
+
+	@Override
+	public CellType getCachedFormulaResultTypeEnum() {
+		if (cellType != CellType.FORMULA) {
+			throw new IllegalStateException("Only formula cells have cached results");
+		}
+		return cachedType;
+	}
+
+	@Override
+	public String getCellFormula() {
+		if (cellType != CellType.FORMULA) {
+			throw new IllegalStateException("not formula cell. cellType=" + cellType);
+		}
+		if (formula == null && formulaSource != null) {
+			this.formula = formulaSource.getFormula(this);
+			this.formulaSource = null;
+		}
+		return formula;
+	}
+
+	@Override
+	public double getNumericCellValue() {
+		if (!numericParsed) {
+			this.numericValue = Double.parseDouble(numericText);
+			this.numericParsed = true;
+		}
+		return numericValue;
+	}
+
+	/**
+	 * @return numeric value as written in the file. null if the value is not numeric or was not read as text
+	 */
+	public String getNumericText() {
+		if (getValueType() != CellType.NUMERIC) {
+			return null;
+		}
+		return numericText;
+	}
+
+	@Override
+	public Date getDateCellValue() {
+		if (getValueType() == CellType.BLANK) {
+			return null;
+		}
+		return DateUtil.getJavaDate(getNumericCellValue(), getSheet().getWorkbook().isDate1904());
+	}
+
+	@Override
+	public String getStringCellValue() {
+		return (stringValue != null) ? stringValue : "";
+	}
+
+	@Override
+	public boolean getBooleanCellValue() {
+		return booleanValue;
+	}
+
+	@Override
+	public byte getErrorCellValue() {
+		return errorValue;
+	}
+
+	private CellType getValueType() {
+		return (cellType == CellType.FORMULA) ? cachedType : cellType;
+	}
+
+	@Override
+	public CellStyle getCellStyle() {
+		return getSheet().getWorkbook().getCellStyleAt(styleIndex);
+	}
+
+	@Override
+	public CellAddress getAddress() {
+		return new CellAddress(getRowIndex(), columnIndex);
+	}
+
+	@Override
+	public Comment getCellComment() {
+		return getSheet().getCellComment(getAddress());
+	}
+
+	@Override
+	public boolean isPartOfArrayFormulaGroup() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return getAddress().formatAsString();
+	}
+
+	protected UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("unsupported at reader=streaming");
+	}
+
+	@Override
+	public void setCellType(int cellType) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellType(CellType cellType) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellValue(double value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellValue(Date value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellValue(Calendar value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellValue(RichTextString value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellValue(String value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellFormula(String formula) throws FormulaParseException {
+		throw unsupported();
+	}
+
+	@Override
+	public RichTextString getRichStringCellValue() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellValue(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellErrorValue(byte value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellStyle(CellStyle style) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setAsActiveCell() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setCellComment(Comment comment) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeCellComment() {
+		throw unsupported();
+	}
+
+	@Override
+	public Hyperlink getHyperlink() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setHyperlink(Hyperlink link) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeHyperlink() {
+		throw unsupported();
+	}
+
+	@Override
+	public CellRangeAddress getArrayFormulaRange() {
+		throw unsupported();
+	}
+}
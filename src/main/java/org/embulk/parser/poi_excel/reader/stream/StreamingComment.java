@@ -0,0 +1,106 @@
+package org.embulk.parser.poi_excel.reader.stream;
+
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.util.CellAddress;
+
+/**
+ * read-only comment of {@link StreamingSheet}.
+ */
+public class StreamingComment implements Comment {
+
+	private final CellAddress address;
+	private final String author;
+	private final RichTextString string;
+	private final boolean visible;
+	private final ClientAnchor clientAnchor;
+
+	public StreamingComment(CellAddress address, String author, RichTextString string, boolean visible,
+			ClientAnchor clientAnchor) {
+		this.address = address;
+		this.author = author;
+		this.string = string;
+		this.visible = visible;
+		this.clientAnchor = clientAnchor;
+	}
+
+	@Override
+	public CellAddress getAddress() {
+		return address;
+	}
+
+	@Override
+	public int getRow() {
+		return address.getRow();
+	}
+
+	@Override
+	public int getColumn() {
+		return address.getColumn();
+	}
+
+	@Override
+	public String getAuthor() {
+		return author;
+	}
+
+	@Override
+	public RichTextString getString() {
+		return string;
+	}
+
+	@Override
+	public boolean isVisible() {
+		return visible;
+	}
+
+	@Override
+	public ClientAnchor getClientAnchor() {
+		return clientAnchor;
+	}
+
+	@Override
+	public String toString() {
+		return address.formatAsString();
+	}
+
+	protected UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("unsupported at reader=streaming");
+	}
+
+	@Override
+	public void setVisible(boolean visible) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setAddress(CellAddress addr) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setAddress(int row, int col) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRow(int row) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setColumn(int col) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setAuthor(String author) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setString(RichTextString string) {
+		throw unsupported();
+	}
+}
@@ -0,0 +1,231 @@
+package org.embulk.parser.poi_excel.reader.stream;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * read-only row of {@link StreamingSheet}. cells are kept in column order.
+ */
+public class StreamingRow implements Row {
+
+	private final StreamingSheet sheet;
+	private final int rowIndex;
+
+	private StreamingCell[] cells = new StreamingCell[8];
+	private int size;
+
+	public StreamingRow(StreamingSheet sheet, int rowIndex) {
+		this.sheet = sheet;
+		this.rowIndex = rowIndex;
+	}
+
+	// reader
+
+	public StreamingCell addCell(int columnIndex) {
+		StreamingCell cell = new StreamingCell(this, columnIndex);
+
+		int index = (size == 0 || cells[size - 1].getColumnIndex() < columnIndex) ? -(size + 1) : search(columnIndex);
+		if (index >= 0) {
+			cells[index] = cell; // duplicate column: the last one wins
+			return cell;
+		}
+		index = -index - 1;
+
+		if (size == cells.length) {
+			cells = Arrays.copyOf(cells, size * 2);
+		}
+		System.arraycopy(cells, index, cells, index + 1, size - index);
+		cells[index] = cell;
+		size++;
+		return cell;
+	}
+
+	private int search(int columnIndex) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = cells[mid].getColumnIndex();
+			if (c < columnIndex) {
+				low = mid + 1;
+			} else if (c > columnIndex) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	// Row
+
+	@Override
+	public int getRowNum() {
+		return rowIndex;
+	}
+
+	@Override
+	public StreamingSheet getSheet() {
+		return sheet;
+	}
+
+	@Override
+	public StreamingCell getCell(int cellnum) {
+		int index = search(cellnum);
+		return (index >= 0) ? cells[index] : null;
+	}
+
+	@Override
+	public Cell getCell(int cellnum, MissingCellPolicy policy) {
+		StreamingCell cell = getCell(cellnum);
+		switch (policy) {
+		case RETURN_BLANK_AS_NULL:
+			if (cell != null && cell.getCellTypeEnum() == CellType.BLANK) {
+				return null;
+			}
+			return cell;
+		case CREATE_NULL_AS_BLANK:
+			if (cell == null) {
+				return new StreamingCell(this, cellnum);
+			}
+			return cell;
+		default:
+			return cell;
+		}
+	}
+
+	@Override
+	public short getFirstCellNum() {
+		return (short) ((size == 0) ? -1 : cells[0].getColumnIndex());
+	}
+
+	@Override
+	public short getLastCellNum() {
+		return (short) ((size == 0) ? -1 : cells[size - 1].getColumnIndex() + 1);
+	}
+
+	@Override
+	public int getPhysicalNumberOfCells() {
+		return size;
+	}
+
+	@Override
+	public Iterator<Cell> cellIterator() {
+		return new Iterator<Cell>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public Cell next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				return cells[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw unsupported();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<Cell> iterator() {
+		return cellIterator();
+	}
+
+	@Override
+	public String toString() {
+		return "row(" + rowIndex + ")";
+	}
+
+	protected UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("unsupported at reader=streaming");
+	}
+
+	@Override
+	public Cell createCell(int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public Cell createCell(int column, int type) {
+		throw unsupported();
+	}
+
+	@Override
+	public Cell createCell(int column, CellType type) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeCell(Cell cell) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRowNum(int rowNum) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setHeight(short height) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setZeroHeight(boolean zHeight) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getZeroHeight() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setHeightInPoints(float height) {
+		throw unsupported();
+	}
+
+	@Override
+	public short getHeight() {
+		throw unsupported();
+	}
+
+	@Override
+	public float getHeightInPoints() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isFormatted() {
+		throw unsupported();
+	}
+
+	@Override
+	public CellStyle getRowStyle() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRowStyle(CellStyle style) {
+		throw unsupported();
+	}
+
+	@Override
+	public int getOutlineLevel() {
+		throw unsupported();
+	}
+}
@@ -0,0 +1,848 @@
+package org.embulk.parser.poi_excel.reader.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.ss.usermodel.AutoFilter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellRange;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DataValidation;
+import org.apache.poi.ss.usermodel.DataValidationHelper;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Footer;
+import org.apache.poi.ss.usermodel.Header;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.PrintSetup;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.PaneInformation;
+
+/**
+ * read-only sheet which reads rows from the file on demand.
+ * <p>
+ * {@link #iterator()} reads the sheet once from the top. {@link #getRow(int)} returns the current row of the iteration
+ * or a retained row; other rows are read by an extra pass over the sheet, so the rows used by random access should be
+ * registered by {@link #retainRow(int)} beforehand.
+ * </p>
+ */
+public abstract class StreamingSheet implements Sheet {
+
+	protected interface RowReader extends Closeable {
+
+		/**
+		 * @return next row. null if end of sheet
+		 */
+		public StreamingRow readRow() throws IOException;
+	}
+
+	private final StreamingWorkbook workbook;
+	private final String sheetName;
+
+	private RowReader currentReader;
+	private StreamingRow currentRow;
+
+	private final BitSet retainRowSet = new BitSet();
+	private final Map<Integer, StreamingRow> retainedRowMap = new HashMap<>();
+
+	private BitSet columnFilter;
+	private int firstRowIndex = 0;
+
+	private List<CellRangeAddress> mergedRegionList;
+	private Map<CellAddress, Comment> commentMap;
+
+	public StreamingSheet(StreamingWorkbook workbook, String sheetName) {
+		this.workbook = workbook;
+		this.sheetName = sheetName;
+	}
+
+	protected abstract RowReader openRowReader() throws IOException;
+
+	protected abstract List<CellRangeAddress> readMergedRegions() throws IOException;
+
+	/**
+	 * @return comments of the sheet (key=cell address). the parts other than the cells are read
+	 */
+	protected abstract Map<CellAddress, Comment> readCellComments() throws IOException;
+
+	/**
+	 * keep the row after the iteration passes it.
+	 *
+	 * @param rowIndex
+	 *            row index (0 origin)
+	 */
+	public void retainRow(int rowIndex) {
+		retainRowSet.set(rowIndex);
+	}
+
+	/**
+	 * read only the cells of the specified columns. (the retained rows are read with all cells)
+	 *
+	 * @param columns
+	 *            column indexes (null if all columns)
+	 */
+	public void setColumnFilter(BitSet columns) {
+		this.columnFilter = columns;
+	}
+
+	/**
+	 * read no cells of the rows before the specified row. (the retained rows are read with all cells)
+	 *
+	 * @param rowIndex
+	 *            first row index (0 origin)
+	 */
+	public void setFirstRowIndex(int rowIndex) {
+		this.firstRowIndex = rowIndex;
+	}
+
+	/**
+	 * @param rowIndex
+	 *            row index (0 origin)
+	 * @param columnIndex
+	 *            column index (0 origin)
+	 * @return false if the cell is not used
+	 */
+	protected final boolean isCellRequired(int rowIndex, int columnIndex) {
+		if (retainRowSet.get(rowIndex)) {
+			return true;
+		}
+		if (rowIndex < firstRowIndex) {
+			return false;
+		}
+		BitSet filter = columnFilter;
+		return filter == null || filter.get(columnIndex);
+	}
+
+	@Override
+	public StreamingWorkbook getWorkbook() {
+		return workbook;
+	}
+
+	@Override
+	public String getSheetName() {
+		return sheetName;
+	}
+
+	@Override
+	public Iterator<Row> rowIterator() {
+		closeReader();
+		try {
+			this.currentReader = openRowReader();
+		} catch (IOException e) {
+			throw new RuntimeException(MessageFormat.format("sheet read error. sheet={0}", sheetName), e);
+		}
+		final RowReader reader = currentReader;
+
+		return new Iterator<Row>() {
+			private StreamingRow next;
+			private boolean end;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null && !end) {
+					next = readRow(reader);
+					if (next == null) {
+						end = true;
+						closeReader();
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public Row next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				StreamingRow row = next;
+				this.next = null;
+
+				currentRow = row;
+				int rowIndex = row.getRowNum();
+				if (retainRowSet.get(rowIndex)) {
+					retainedRowMap.put(rowIndex, row);
+				}
+				return row;
+			}
+
+			@Override
+			public void remove() {
+				throw unsupported();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<Row> iterator() {
+		return rowIterator();
+	}
+
+	private StreamingRow readRow(RowReader reader) {
+		try {
+			return reader.readRow();
+		} catch (IOException e) {
+			throw new RuntimeException(MessageFormat.format("sheet read error. sheet={0}", sheetName), e);
+		}
+	}
+
+	private void closeReader() {
+		if (currentReader != null) {
+			try {
+				currentReader.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			this.currentReader = null;
+		}
+	}
+
+	@Override
+	public StreamingRow getRow(int rownum) {
+		StreamingRow row = currentRow;
+		if (row != null && row.getRowNum() == rownum
+				&& ((columnFilter == null && rownum >= firstRowIndex) || retainRowSet.get(rownum))) {
+			return row;
+		}
+
+		Integer key = rownum;
+		if (!retainedRowMap.containsKey(key)) {
+			retainRowSet.set(rownum);
+			readRetainedRows();
+		}
+		return retainedRowMap.get(key);
+	}
+
+	private void readRetainedRows() {
+		int last = retainRowSet.length() - 1;
+		try (RowReader reader = openRowReader()) {
+			for (;;) {
+				StreamingRow row = readRow(reader);
+				if (row == null || row.getRowNum() > last) {
+					break;
+				}
+				int rowIndex = row.getRowNum();
+				if (retainRowSet.get(rowIndex)) {
+					retainedRowMap.put(rowIndex, row);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(MessageFormat.format("sheet read error. sheet={0}", sheetName), e);
+		}
+		for (int rowIndex = retainRowSet.nextSetBit(0); rowIndex >= 0; rowIndex = retainRowSet.nextSetBit(rowIndex + 1)) {
+			if (!retainedRowMap.containsKey(rowIndex)) {
+				retainedRowMap.put(rowIndex, null);
+			}
+		}
+	}
+
+	@Override
+	public List<CellRangeAddress> getMergedRegions() {
+		if (mergedRegionList == null) {
+			try {
+				this.mergedRegionList = readMergedRegions();
+			} catch (IOException e) {
+				throw new RuntimeException(MessageFormat.format("sheet read error. sheet={0}", sheetName), e);
+			}
+			// the first cell of the region is referred from the other cells
+			for (CellRangeAddress region : mergedRegionList) {
+				retainRow(region.getFirstRow());
+			}
+		}
+		return mergedRegionList;
+	}
+
+	@Override
+	public int getNumMergedRegions() {
+		return getMergedRegions().size();
+	}
+
+	@Override
+	public CellRangeAddress getMergedRegion(int index) {
+		return getMergedRegions().get(index);
+	}
+
+	@Override
+	public Comment getCellComment(CellAddress ref) {
+		return getCellComments().get(ref);
+	}
+
+	public void close() throws IOException {
+		closeReader();
+		this.currentRow = null;
+		retainedRowMap.clear();
+		this.commentMap = null;
+	}
+
+	@Override
+	public String toString() {
+		return sheetName;
+	}
+
+	protected UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("unsupported at reader=streaming");
+	}
+
+	@Override
+	public Row createRow(int rownum) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeRow(Row row) {
+		throw unsupported();
+	}
+
+	@Override
+	public int getPhysicalNumberOfRows() {
+		throw unsupported();
+	}
+
+	@Override
+	public int getFirstRowNum() {
+		throw unsupported();
+	}
+
+	@Override
+	public int getLastRowNum() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setColumnHidden(int columnIndex, boolean hidden) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isColumnHidden(int columnIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRightToLeft(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isRightToLeft() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setColumnWidth(int columnIndex, int width) {
+		throw unsupported();
+	}
+
+	@Override
+	public int getColumnWidth(int columnIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public float getColumnWidthInPixels(int columnIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDefaultColumnWidth(int width) {
+		throw unsupported();
+	}
+
+	@Override
+	public int getDefaultColumnWidth() {
+		throw unsupported();
+	}
+
+	@Override
+	public short getDefaultRowHeight() {
+		throw unsupported();
+	}
+
+	@Override
+	public float getDefaultRowHeightInPoints() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDefaultRowHeight(short height) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDefaultRowHeightInPoints(float height) {
+		throw unsupported();
+	}
+
+	@Override
+	public CellStyle getColumnStyle(int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public int addMergedRegion(CellRangeAddress region) {
+		throw unsupported();
+	}
+
+	@Override
+	public int addMergedRegionUnsafe(CellRangeAddress region) {
+		throw unsupported();
+	}
+
+	@Override
+	public void validateMergedRegions() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setVerticallyCenter(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setHorizontallyCenter(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getHorizontallyCenter() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getVerticallyCenter() {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeMergedRegion(int index) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeMergedRegions(Collection<Integer> indices) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setForceFormulaRecalculation(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getForceFormulaRecalculation() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setAutobreaks(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDisplayGuts(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDisplayZeros(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isDisplayZeros() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFitToPage(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRowSumsBelow(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRowSumsRight(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getAutobreaks() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getDisplayGuts() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getFitToPage() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getRowSumsBelow() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getRowSumsRight() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isPrintGridlines() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPrintGridlines(boolean show) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isPrintRowAndColumnHeadings() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPrintRowAndColumnHeadings(boolean show) {
+		throw unsupported();
+	}
+
+	@Override
+	public PrintSetup getPrintSetup() {
+		throw unsupported();
+	}
+
+	@Override
+	public Header getHeader() {
+		throw unsupported();
+	}
+
+	@Override
+	public Footer getFooter() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSelected(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public double getMargin(short margin) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setMargin(short margin, double size) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getProtect() {
+		throw unsupported();
+	}
+
+	@Override
+	public void protectSheet(String password) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getScenarioProtect() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setZoom(int scale) {
+		throw unsupported();
+	}
+
+	@Override
+	public short getTopRow() {
+		throw unsupported();
+	}
+
+	@Override
+	public short getLeftCol() {
+		throw unsupported();
+	}
+
+	@Override
+	public void showInPane(int toprow, int leftcol) {
+		throw unsupported();
+	}
+
+	@Override
+	public void shiftRows(int startRow, int endRow, int n) {
+		throw unsupported();
+	}
+
+	@Override
+	public void shiftRows(int startRow, int endRow, int n, boolean copyRowHeight, boolean resetOriginalRowHeight) {
+		throw unsupported();
+	}
+
+	@Override
+	public void createFreezePane(int colSplit, int rowSplit, int leftmostColumn, int topRow) {
+		throw unsupported();
+	}
+
+	@Override
+	public void createFreezePane(int colSplit, int rowSplit) {
+		throw unsupported();
+	}
+
+	@Override
+	public void createSplitPane(int xSplitPos, int ySplitPos, int leftmostColumn, int topRow, int activePane) {
+		throw unsupported();
+	}
+
+	@Override
+	public PaneInformation getPaneInformation() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDisplayGridlines(boolean show) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isDisplayGridlines() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDisplayFormulas(boolean show) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isDisplayFormulas() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDisplayRowColHeadings(boolean show) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isDisplayRowColHeadings() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRowBreak(int row) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isRowBroken(int row) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeRowBreak(int row) {
+		throw unsupported();
+	}
+
+	@Override
+	public int[] getRowBreaks() {
+		throw unsupported();
+	}
+
+	@Override
+	public int[] getColumnBreaks() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setColumnBreak(int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isColumnBroken(int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeColumnBreak(int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setColumnGroupCollapsed(int columnNumber, boolean collapsed) {
+		throw unsupported();
+	}
+
+	@Override
+	public void groupColumn(int fromColumn, int toColumn) {
+		throw unsupported();
+	}
+
+	@Override
+	public void ungroupColumn(int fromColumn, int toColumn) {
+		throw unsupported();
+	}
+
+	@Override
+	public void groupRow(int fromRow, int toRow) {
+		throw unsupported();
+	}
+
+	@Override
+	public void ungroupRow(int fromRow, int toRow) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRowGroupCollapsed(int row, boolean collapse) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setDefaultColumnStyle(int column, CellStyle style) {
+		throw unsupported();
+	}
+
+	@Override
+	public void autoSizeColumn(int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public void autoSizeColumn(int column, boolean useMergedCells) {
+		throw unsupported();
+	}
+
+	@Override
+	public Map<CellAddress, Comment> getCellComments() {
+		if (commentMap == null) {
+			try {
+				this.commentMap = readCellComments();
+			} catch (IOException e) {
+				throw new RuntimeException(MessageFormat.format("sheet read error. sheet={0}", sheetName), e);
+			}
+		}
+		return commentMap;
+	}
+
+	@Override
+	public Drawing<?> getDrawingPatriarch() {
+		throw unsupported();
+	}
+
+	@Override
+	public Drawing<?> createDrawingPatriarch() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isSelected() {
+		throw unsupported();
+	}
+
+	@Override
+	public CellRange<? extends Cell> setArrayFormula(String formula, CellRangeAddress range) {
+		throw unsupported();
+	}
+
+	@Override
+	public CellRange<? extends Cell> removeArrayFormula(Cell cell) {
+		throw unsupported();
+	}
+
+	@Override
+	public DataValidationHelper getDataValidationHelper() {
+		throw unsupported();
+	}
+
+	@Override
+	public List<? extends DataValidation> getDataValidations() {
+		throw unsupported();
+	}
+
+	@Override
+	public void addValidationData(DataValidation dataValidation) {
+		throw unsupported();
+	}
+
+	@Override
+	public AutoFilter setAutoFilter(CellRangeAddress range) {
+		throw unsupported();
+	}
+
+	@Override
+	public SheetConditionalFormatting getSheetConditionalFormatting() {
+		throw unsupported();
+	}
+
+	@Override
+	public CellRangeAddress getRepeatingRows() {
+		throw unsupported();
+	}
+
+	@Override
+	public CellRangeAddress getRepeatingColumns() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRepeatingRows(CellRangeAddress rowRangeRef) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRepeatingColumns(CellRangeAddress columnRangeRef) {
+		throw unsupported();
+	}
+
+	@Override
+	public int getColumnOutlineLevel(int columnIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public Hyperlink getHyperlink(int row, int column) {
+		throw unsupported();
+	}
+
+	@Override
+	public Hyperlink getHyperlink(CellAddress addr) {
+		throw unsupported();
+	}
+
+	@Override
+	public List<? extends Hyperlink> getHyperlinkList() {
+		throw unsupported();
+	}
+
+	@Override
+	public CellAddress getActiveCell() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setActiveCell(CellAddress address) {
+		throw unsupported();
+	}
+}
@@ -0,0 +1,357 @@
+package org.embulk.parser.poi_excel.reader.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.PictureData;
+import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetVisibility;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * read-only workbook which does not load the cells into memory.
+ */
+public abstract class StreamingWorkbook implements Workbook {
+
+	private final List<StreamingSheet> sheetList = new ArrayList<>();
+
+	private final Map<Integer, CellStyle> styleMap = new HashMap<>();
+
+	protected void addSheet(StreamingSheet sheet) {
+		sheetList.add(sheet);
+	}
+
+	public abstract boolean isDate1904();
+
+	protected abstract CellStyle readCellStyle(int idx);
+
+	@Override
+	public int getNumberOfSheets() {
+		return sheetList.size();
+	}
+
+	@Override
+	public StreamingSheet getSheetAt(int index) {
+		return sheetList.get(index);
+	}
+
+	@Override
+	public StreamingSheet getSheet(String name) {
+		for (StreamingSheet sheet : sheetList) {
+			if (sheet.getSheetName().equalsIgnoreCase(name)) {
+				return sheet;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String getSheetName(int sheet) {
+		return getSheetAt(sheet).getSheetName();
+	}
+
+	@Override
+	public int getSheetIndex(String name) {
+		for (int i = 0; i < sheetList.size(); i++) {
+			if (sheetList.get(i).getSheetName().equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getSheetIndex(Sheet sheet) {
+		return sheetList.indexOf(sheet);
+	}
+
+	@Override
+	public Iterator<Sheet> sheetIterator() {
+		return Collections.<Sheet> unmodifiableList(sheetList).iterator();
+	}
+
+	@Override
+	public Iterator<Sheet> iterator() {
+		return sheetIterator();
+	}
+
+	@Override
+	public synchronized CellStyle getCellStyleAt(int idx) {
+		CellStyle style = styleMap.get(idx);
+		if (style == null) {
+			style = readCellStyle(idx);
+			styleMap.put(idx, style);
+		}
+		return style;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (StreamingSheet sheet : sheetList) {
+			sheet.close();
+		}
+	}
+
+	protected UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("unsupported at reader=streaming");
+	}
+
+	@Override
+	public int getActiveSheetIndex() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setActiveSheet(int sheetIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public int getFirstVisibleTab() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFirstVisibleTab(int sheetIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSheetOrder(String sheetname, int pos) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSelectedTab(int index) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSheetName(int sheet, String name) {
+		throw unsupported();
+	}
+
+	@Override
+	public Sheet createSheet() {
+		throw unsupported();
+	}
+
+	@Override
+	public Sheet createSheet(String sheetname) {
+		throw unsupported();
+	}
+
+	@Override
+	public Sheet cloneSheet(int sheetNum) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeSheetAt(int index) {
+		throw unsupported();
+	}
+
+	@Override
+	public Font createFont() {
+		throw unsupported();
+	}
+
+	@Override
+	public Font findFont(boolean bold, short color, short fontHeight, String name, boolean italic, boolean strikeout, short typeOffset, byte underline) {
+		throw unsupported();
+	}
+
+	@Override
+	public CellStyle createCellStyle() {
+		throw unsupported();
+	}
+
+	@Override
+	public void write(OutputStream stream) throws IOException {
+		throw unsupported();
+	}
+
+	@Override
+	public int getNumberOfNames() {
+		throw unsupported();
+	}
+
+	@Override
+	public Name getName(String name) {
+		throw unsupported();
+	}
+
+	@Override
+	public List<? extends Name> getNames(String name) {
+		throw unsupported();
+	}
+
+	@Override
+	public List<? extends Name> getAllNames() {
+		throw unsupported();
+	}
+
+	@Override
+	public Name getNameAt(int nameIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public Name createName() {
+		throw unsupported();
+	}
+
+	@Override
+	public int getNameIndex(String name) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeName(int index) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeName(String name) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removeName(Name name) {
+		throw unsupported();
+	}
+
+	@Override
+	public int linkExternalWorkbook(String name, Workbook workbook) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPrintArea(int sheetIndex, String reference) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPrintArea(int sheetIndex, int startColumn, int endColumn, int startRow, int endRow) {
+		throw unsupported();
+	}
+
+	@Override
+	public String getPrintArea(int sheetIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public void removePrintArea(int sheetIndex) {
+		throw unsupported();
+	}
+
+	@Override
+	public MissingCellPolicy getMissingCellPolicy() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setMissingCellPolicy(MissingCellPolicy missingCellPolicy) {
+		throw unsupported();
+	}
+
+	@Override
+	public DataFormat createDataFormat() {
+		throw unsupported();
+	}
+
+	@Override
+	public int addPicture(byte[] pictureData, int format) {
+		throw unsupported();
+	}
+
+	@Override
+	public List<? extends PictureData> getAllPictures() {
+		throw unsupported();
+	}
+
+	@Override
+	public CreationHelper getCreationHelper() {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isHidden() {
+		throw unsupported();
+	}
+
+	@Override
+	public void setHidden(boolean hiddenFlag) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isSheetHidden(int sheetIx) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean isSheetVeryHidden(int sheetIx) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSheetHidden(int sheetIx, boolean hidden) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSheetHidden(int sheetIx, int hidden) {
+		throw unsupported();
+	}
+
+	@Override
+	public SheetVisibility getSheetVisibility(int sheetIx) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSheetVisibility(int sheetIx, SheetVisibility visibility) {
+		throw unsupported();
+	}
+
+	@Override
+	public void addToolPack(UDFFinder toopack) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setForceFormulaRecalculation(boolean value) {
+		throw unsupported();
+	}
+
+	@Override
+	public boolean getForceFormulaRecalculation() {
+		throw unsupported();
+	}
+
+	@Override
+	public SpreadsheetVersion getSpreadsheetVersion() {
+		throw unsupported();
+	}
+
+	@Override
+	public int addOlePackage(byte[] oleData, String label, String fileName, String command) throws IOException {
+		throw unsupported();
+	}
+}
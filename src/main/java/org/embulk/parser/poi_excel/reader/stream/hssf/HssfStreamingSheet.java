@@ -0,0 +1,399 @@
+package org.embulk.parser.poi_excel.reader.stream.hssf;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.poi.ddf.DefaultEscherRecordFactory;
+import org.apache.poi.ddf.EscherClientAnchorRecord;
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.CommonObjectDataSubRecord;
+import org.apache.poi.hssf.record.DrawingRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MergeCellsRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NoteRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.ObjRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.SharedValueRecordBase;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.SubRecord;
+import org.apache.poi.hssf.record.TextObjectRecord;
+import org.apache.poi.hssf.usermodel.HSSFClientAnchor;
+import org.apache.poi.hssf.usermodel.HSSFRichTextString;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.LittleEndian;
+import org.embulk.parser.poi_excel.reader.stream.StreamingCell;
+import org.embulk.parser.poi_excel.reader.stream.StreamingCell.FormulaSource;
+import org.embulk.parser.poi_excel.reader.stream.StreamingComment;
+import org.embulk.parser.poi_excel.reader.stream.StreamingRow;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.parser.poi_excel.reader.stream.hssf.HssfStreamingWorkbook.SheetRecordStream;
+
+/**
+ * streaming sheet of xls. assembles the rows from the cell records of the sheet substream.
+ */
+public class HssfStreamingSheet extends StreamingSheet {
+
+	private final int sheetIndex;
+	private final int positionOfBof;
+
+	public HssfStreamingSheet(HssfStreamingWorkbook workbook, String sheetName, int sheetIndex, int positionOfBof) {
+		super(workbook, sheetName);
+		this.sheetIndex = sheetIndex;
+		this.positionOfBof = positionOfBof;
+	}
+
+	@Override
+	public HssfStreamingWorkbook getWorkbook() {
+		return (HssfStreamingWorkbook) super.getWorkbook();
+	}
+
+	@Override
+	protected RowReader openRowReader() throws IOException {
+		return new HssfRowReader(getWorkbook().openSheet(sheetIndex, positionOfBof));
+	}
+
+	@Override
+	protected List<CellRangeAddress> readMergedRegions() throws IOException {
+		List<CellRangeAddress> list = new ArrayList<>();
+		try (SheetRecordStream records = getWorkbook().openSheet(sheetIndex, positionOfBof)) {
+			Record record;
+			while ((record = records.next()) != null) {
+				if (record instanceof MergeCellsRecord && records.isSheetLevel()) {
+					MergeCellsRecord merged = (MergeCellsRecord) record;
+					for (int i = 0; i < merged.getNumAreas(); i++) {
+						list.add(merged.getAreaAt(i).copy());
+					}
+				}
+			}
+		}
+		return list;
+	}
+
+	@Override
+	protected Map<CellAddress, Comment> readCellComments() throws IOException {
+		// OBJ(comment) follows the drawing of the shape, TXO follows OBJ, and NOTE refers to the OBJ id
+		Map<Integer, EscherClientAnchorRecord> anchorMap = new HashMap<>();
+		Map<Integer, HSSFRichTextString> textMap = new HashMap<>();
+		List<NoteRecord> noteList = new ArrayList<>();
+		try (SheetRecordStream records = getWorkbook().openSheet(sheetIndex, positionOfBof)) {
+			EscherClientAnchorRecord lastAnchor = null;
+			int objectId = -1;
+			Record record;
+			while ((record = records.next()) != null) {
+				if (!records.isSheetLevel()) {
+					continue;
+				}
+				switch (record.getSid()) {
+				case DrawingRecord.sid:
+					EscherClientAnchorRecord anchor = findClientAnchor(((DrawingRecord) record).getRecordData());
+					if (anchor != null) {
+						lastAnchor = anchor;
+					}
+					break;
+				case ObjRecord.sid:
+					objectId = -1;
+					List<SubRecord> subs = ((ObjRecord) record).getSubRecords();
+					if (!subs.isEmpty() && subs.get(0) instanceof CommonObjectDataSubRecord) {
+						CommonObjectDataSubRecord common = (CommonObjectDataSubRecord) subs.get(0);
+						if (common.getObjectType() == CommonObjectDataSubRecord.OBJECT_TYPE_COMMENT) {
+							objectId = common.getObjectId();
+							if (lastAnchor != null) {
+								anchorMap.put(objectId, lastAnchor);
+							}
+						}
+					}
+					lastAnchor = null;
+					break;
+				case TextObjectRecord.sid:
+					if (objectId >= 0) {
+						textMap.put(objectId, ((TextObjectRecord) record).getStr());
+						objectId = -1;
+					}
+					break;
+				case NoteRecord.sid:
+					noteList.add((NoteRecord) record);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		Map<CellAddress, Comment> map = new HashMap<>();
+		for (NoteRecord note : noteList) {
+			CellAddress address = new CellAddress(note.getRow(), note.getColumn());
+			HSSFRichTextString string = textMap.get(note.getShapeId());
+			boolean visible = note.getFlags() == NoteRecord.NOTE_VISIBLE;
+			EscherClientAnchorRecord anchor = anchorMap.get(note.getShapeId());
+			ClientAnchor clientAnchor = (anchor != null) ? new HSSFClientAnchor(anchor) : null;
+			map.put(address, new StreamingComment(address, note.getAuthor(), string, visible, clientAnchor));
+		}
+		return map;
+	}
+
+	/**
+	 * @param data
+	 *            escher records of DrawingRecord (the containers may continue to the next DrawingRecord)
+	 * @return last client anchor. null if not found
+	 */
+	private static EscherClientAnchorRecord findClientAnchor(byte[] data) {
+		EscherClientAnchorRecord result = null;
+		int offset = 0;
+		while (offset + 8 <= data.length) {
+			int options = LittleEndian.getUShort(data, offset);
+			short recordId = LittleEndian.getShort(data, offset + 2);
+			int length = LittleEndian.getInt(data, offset + 4);
+			if ((options & 0x0f) == 0x0f) {
+				offset += 8; // container
+				continue;
+			}
+			if (length < 0 || offset + 8 + length > data.length) {
+				break;
+			}
+			if (recordId == EscherClientAnchorRecord.RECORD_ID) {
+				EscherClientAnchorRecord anchor = new EscherClientAnchorRecord();
+				anchor.fillFields(data, offset, new DefaultEscherRecordFactory());
+				result = anchor;
+			}
+			offset += 8 + length;
+		}
+		return result;
+	}
+
+	private static int key(int rowIndex, int columnIndex) {
+		return (rowIndex << 8) | (columnIndex & 0xff);
+	}
+
+	private class HssfRowReader implements RowReader {
+		private final SheetRecordStream records;
+
+		// the cells of a row block follow its row records
+		private final TreeMap<Integer, StreamingRow> pendingRows = new TreeMap<>();
+		private final ArrayDeque<StreamingRow> readyRows = new ArrayDeque<>();
+		private boolean cellAfterRowRecord;
+		private boolean end;
+
+		// the cached string of a formula is in the next StringRecord
+		private StreamingCell stringFormulaCell;
+		private FormulaSource stringFormulaSource;
+
+		private final Map<Integer, SharedValueRecordBase> sharedValueMap = new HashMap<>();
+
+		public HssfRowReader(SheetRecordStream records) {
+			this.records = records;
+		}
+
+		@Override
+		public StreamingRow readRow() throws IOException {
+			while (readyRows.isEmpty() && !end) {
+				Record record = records.next();
+				if (record == null) {
+					this.end = true;
+					finishStringFormula("");
+					flushRows(Integer.MAX_VALUE);
+					break;
+				}
+				if (records.isSheetLevel()) {
+					processRecord(record);
+				}
+			}
+			return readyRows.poll();
+		}
+
+		private void processRecord(Record record) {
+			if (record instanceof StringRecord) {
+				finishStringFormula(((StringRecord) record).getString());
+				return;
+			}
+			finishStringFormula("");
+
+			switch (record.getSid()) {
+			case RowRecord.sid:
+				if (cellAfterRowRecord) {
+					flushRows(Integer.MAX_VALUE);
+					this.cellAfterRowRecord = false;
+				}
+				getRow(((RowRecord) record).getRowNumber());
+				return;
+			case SharedFormulaRecord.sid:
+			case ArrayRecord.sid:
+				SharedValueRecordBase shared = (SharedValueRecordBase) record;
+				sharedValueMap.put(key(shared.getFirstRow(), shared.getFirstColumn()), shared);
+				return;
+			case MulRKRecord.sid:
+				MulRKRecord mulRk = (MulRKRecord) record;
+				for (int i = 0; i < mulRk.getNumColumns(); i++) {
+					StreamingCell cell = addCell(mulRk.getRow(), mulRk.getFirstColumn() + i, mulRk.getXFAt(i));
+					if (cell != null) {
+						cell.setNumeric(mulRk.getRKNumberAt(i));
+					}
+				}
+				return;
+			case MulBlankRecord.sid:
+				MulBlankRecord mulBlank = (MulBlankRecord) record;
+				for (int i = 0; i < mulBlank.getNumColumns(); i++) {
+					addCell(mulBlank.getRow(), mulBlank.getFirstColumn() + i, mulBlank.getXFAt(i));
+				}
+				return;
+			default:
+				break;
+			}
+
+			if (record instanceof CellValueRecordInterface) {
+				CellValueRecordInterface value = (CellValueRecordInterface) record;
+				StreamingCell cell = addCell(value.getRow(), value.getColumn(), value.getXFIndex());
+				if (cell != null) {
+					setValue(cell, record);
+				}
+			}
+		}
+
+		private void setValue(StreamingCell cell, Record record) {
+			switch (record.getSid()) {
+			case NumberRecord.sid:
+				cell.setNumeric(((NumberRecord) record).getValue());
+				break;
+			case RKRecord.sid:
+				cell.setNumeric(((RKRecord) record).getRKNumber());
+				break;
+			case LabelSSTRecord.sid:
+				int index = ((LabelSSTRecord) record).getSSTIndex();
+				cell.setString(getWorkbook().getGlobalWorkbook().getInternalWorkbook().getSSTString(index).getString());
+				break;
+			case LabelRecord.sid:
+				cell.setString(((LabelRecord) record).getValue());
+				break;
+			case BoolErrRecord.sid:
+				BoolErrRecord boolErr = (BoolErrRecord) record;
+				if (boolErr.isBoolean()) {
+					cell.setBoolean(boolErr.getBooleanValue());
+				} else {
+					cell.setError(boolErr.getErrorValue());
+				}
+				break;
+			case FormulaRecord.sid:
+				setFormula(cell, (FormulaRecord) record);
+				break;
+			case BlankRecord.sid:
+			default:
+				break;
+			}
+		}
+
+		private void setFormula(StreamingCell cell, FormulaRecord record) {
+			FormulaSource source = new HssfFormulaSource(record);
+			CellType type = CellType.forInt(record.getCachedResultType());
+			switch (type) {
+			case STRING:
+				if (record.hasCachedResultString()) {
+					this.stringFormulaCell = cell;
+					this.stringFormulaSource = source;
+					return;
+				}
+				cell.setString("");
+				break;
+			case BOOLEAN:
+				cell.setBoolean(record.getCachedBooleanValue());
+				break;
+			case ERROR:
+				cell.setError((byte) record.getCachedErrorValue());
+				break;
+			default:
+				cell.setNumeric(record.getValue());
+				break;
+			}
+			cell.setFormula(source);
+		}
+
+		private void finishStringFormula(String value) {
+			if (stringFormulaCell != null) {
+				stringFormulaCell.setString(value);
+				stringFormulaCell.setFormula(stringFormulaSource);
+				this.stringFormulaCell = null;
+				this.stringFormulaSource = null;
+			}
+		}
+
+		/**
+		 * @return null if the cell is not used
+		 */
+		private StreamingCell addCell(int rowIndex, int columnIndex, short xfIndex) {
+			flushRows(rowIndex);
+			this.cellAfterRowRecord = true;
+
+			StreamingRow row = getRow(rowIndex);
+			if (!isCellRequired(rowIndex, columnIndex)) {
+				return null;
+			}
+			StreamingCell cell = row.addCell(columnIndex);
+			cell.setStyleIndex(xfIndex);
+			return cell;
+		}
+
+		private StreamingRow getRow(int rowIndex) {
+			StreamingRow row = pendingRows.get(rowIndex);
+			if (row == null) {
+				row = new StreamingRow(HssfStreamingSheet.this, rowIndex);
+				pendingRows.put(rowIndex, row);
+			}
+			return row;
+		}
+
+		private void flushRows(int rowIndex) {
+			while (!pendingRows.isEmpty() && pendingRows.firstKey() < rowIndex) {
+				readyRows.add(pendingRows.pollFirstEntry().getValue());
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			records.close();
+		}
+
+		private class HssfFormulaSource implements FormulaSource {
+			private final FormulaRecord record;
+
+			public HssfFormulaSource(FormulaRecord record) {
+				this.record = record;
+			}
+
+			@Override
+			public String getFormula(StreamingCell cell) {
+				Ptg[] ptgs = record.getParsedExpression();
+				CellReference ref = record.getFormula().getExpReference();
+				if (ref != null) {
+					SharedValueRecordBase shared = sharedValueMap.get(key(ref.getRow(), ref.getCol()));
+					if (shared instanceof SharedFormulaRecord) {
+						ptgs = ((SharedFormulaRecord) shared).getFormulaTokens(record);
+					} else if (shared instanceof ArrayRecord) {
+						ptgs = ((ArrayRecord) shared).getFormulaTokens();
+					}
+				}
+				return FormulaRenderer.toFormulaString(getWorkbook().getRenderingWorkbook(), ptgs);
+			}
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package org.embulk.parser.poi_excel.reader.stream.hssf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FilePassRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheet;
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheetRange;
+import org.apache.poi.ss.formula.FormulaRenderingWorkbook;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.embulk.parser.poi_excel.reader.stream.StreamingWorkbook;
+
+/**
+ * streaming workbook of xls. only the workbook globals (SST, styles, fonts, palette, ...) are kept in memory, and the
+ * sheets are read from the record stream.
+ */
+public class HssfStreamingWorkbook extends StreamingWorkbook {
+
+	private final NPOIFSFileSystem fs;
+	private final File file;
+	private final String workbookName;
+	private final HSSFWorkbook globalWorkbook;
+	private final boolean encrypted;
+
+	public HssfStreamingWorkbook(NPOIFSFileSystem fs) throws IOException {
+		this(fs, null);
+	}
+
+	/**
+	 * @param fs
+	 *            file system. closed if the workbook cannot be read
+	 * @param file
+	 *            file of the file system. null if the file system is on the heap
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public HssfStreamingWorkbook(NPOIFSFileSystem fs, File file) throws IOException {
+		this.fs = fs;
+		this.file = file;
+		try {
+			DirectoryNode root = fs.getRoot();
+			this.workbookName = HSSFWorkbook.getWorkbookDirEntryName(root);
+
+			List<Record> globals = new ArrayList<>();
+			List<BoundSheetRecord> boundSheets = new ArrayList<>();
+			boolean encrypted = false;
+			try (InputStream is = root.createDocumentInputStream(workbookName)) {
+				RecordFactoryInputStream rs = new RecordFactoryInputStream(is, true);
+				Record record;
+				while ((record = rs.nextRecord()) != null) {
+					globals.add(record);
+					if (record instanceof BoundSheetRecord) {
+						boundSheets.add((BoundSheetRecord) record);
+					} else if (record instanceof FilePassRecord) {
+						encrypted = true;
+					} else if (record.getSid() == EOFRecord.sid) {
+						break;
+					}
+				}
+			}
+			this.encrypted = encrypted;
+			this.globalWorkbook = HSSFWorkbook.create(InternalWorkbook.createWorkbook(globals));
+
+			for (int i = 0; i < boundSheets.size(); i++) {
+				BoundSheetRecord bsr = boundSheets.get(i);
+				addSheet(new HssfStreamingSheet(this, bsr.getSheetname(), i, bsr.getPositionOfBof()));
+			}
+		} catch (IOException | RuntimeException e) {
+			// release the file channel (the spooled file cannot be deleted on Windows while it is open)
+			try {
+				fs.close();
+			} catch (IOException ce) {
+				e.addSuppressed(ce);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return workbook which has only the workbook globals (for styles and colors)
+	 */
+	public HSSFWorkbook getGlobalWorkbook() {
+		return globalWorkbook;
+	}
+
+	private FormulaRenderingWorkbook renderingWorkbook;
+
+	/**
+	 * @return workbook to render formula. (HSSFEvaluationWorkbook needs HSSFSheet to get the sheet name)
+	 */
+	synchronized FormulaRenderingWorkbook getRenderingWorkbook() {
+		if (renderingWorkbook == null) {
+			this.renderingWorkbook = new GlobalRenderingWorkbook(globalWorkbook.getInternalWorkbook());
+		}
+		return renderingWorkbook;
+	}
+
+	private static class GlobalRenderingWorkbook implements FormulaRenderingWorkbook {
+		private final InternalWorkbook book;
+
+		public GlobalRenderingWorkbook(InternalWorkbook book) {
+			this.book = book;
+		}
+
+		@Override
+		public ExternalSheet getExternalSheet(int externSheetIndex) {
+			ExternalSheet sheet = book.getExternalSheet(externSheetIndex);
+			if (sheet != null) {
+				return sheet;
+			}
+
+			int first = book.getFirstSheetIndexFromExternSheetIndex(externSheetIndex);
+			if (first < 0) {
+				return null;
+			}
+			int last = book.getLastSheetIndexFromExternSheetIndex(externSheetIndex);
+			if (last == first) {
+				return new ExternalSheet(null, book.getSheetName(first));
+			} else {
+				return new ExternalSheetRange(null, book.getSheetName(first), book.getSheetName(last));
+			}
+		}
+
+		@Override
+		public String getSheetFirstNameByExternSheet(int externSheetIndex) {
+			return book.findSheetFirstNameFromExternSheet(externSheetIndex);
+		}
+
+		@Override
+		public String getSheetLastNameByExternSheet(int externSheetIndex) {
+			return book.findSheetLastNameFromExternSheet(externSheetIndex);
+		}
+
+		@Override
+		public String resolveNameXText(NameXPtg nameXPtg) {
+			return book.resolveNameXText(nameXPtg.getSheetRefIndex(), nameXPtg.getNameIndex());
+		}
+
+		@Override
+		public String getNameText(NamePtg namePtg) {
+			return book.getNameRecord(namePtg.getIndex()).getNameText();
+		}
+	}
+
+	/**
+	 * record stream of one sheet. the BOF of the sheet has been read already.
+	 */
+	static class SheetRecordStream implements Closeable {
+		private final NPOIFSFileSystem ownFs;
+		private final InputStream is;
+		private final RecordFactoryInputStream rs;
+		private int depth = 1;
+
+		SheetRecordStream(NPOIFSFileSystem ownFs, InputStream is, RecordFactoryInputStream rs) {
+			this.ownFs = ownFs;
+			this.is = is;
+			this.rs = rs;
+		}
+
+		/**
+		 * @return next record of the sheet. null if end of sheet
+		 */
+		public Record next() {
+			if (depth <= 0) {
+				return null;
+			}
+			Record record = rs.nextRecord();
+			if (record == null) {
+				this.depth = 0;
+				return null;
+			}
+			switch (record.getSid()) {
+			case BOFRecord.sid:
+				depth++;
+				break;
+			case EOFRecord.sid:
+				if (--depth <= 0) {
+					return null;
+				}
+				break;
+			default:
+				break;
+			}
+			return record;
+		}
+
+		/**
+		 * @return true if the record is in the sheet substream (not in the embedded substream such as chart)
+		 */
+		public boolean isSheetLevel() {
+			return depth == 1;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				is.close();
+			} finally {
+				if (ownFs != null) {
+					ownFs.close();
+				}
+			}
+		}
+	}
+
+	SheetRecordStream openSheet(int sheetIndex, int positionOfBof) throws IOException {
+		// NPOIFSFileSystem on a file seeks the shared file channel, so the sheets read in parallel need their own
+		NPOIFSFileSystem sheetFs = (file != null) ? new NPOIFSFileSystem(file, true) : null;
+		try {
+			SheetRecordStream stream = openSheet(sheetFs, sheetIndex, positionOfBof);
+			sheetFs = null;
+			return stream;
+		} finally {
+			if (sheetFs != null) {
+				sheetFs.close();
+			}
+		}
+	}
+
+	private SheetRecordStream openSheet(NPOIFSFileSystem sheetFs, int sheetIndex, int positionOfBof)
+			throws IOException {
+		DirectoryNode root = (sheetFs != null) ? sheetFs.getRoot() : fs.getRoot();
+		if (!encrypted && positionOfBof > 0) {
+			InputStream is = root.createDocumentInputStream(workbookName);
+			try {
+				long n = positionOfBof;
+				while (n > 0) {
+					long skipped = is.skip(n);
+					if (skipped <= 0) {
+						break;
+					}
+					n -= skipped;
+				}
+				if (n == 0) {
+					RecordFactoryInputStream rs = new RecordFactoryInputStream(is, false);
+					Record bof = rs.nextRecord();
+					if (bof instanceof BOFRecord) {
+						return new SheetRecordStream(sheetFs, is, rs);
+					}
+				}
+			} catch (RuntimeException e) {
+				// illegal position. read from the top
+			}
+			is.close();
+		}
+
+		// skip the workbook globals and the sheets before
+		InputStream is = root.createDocumentInputStream(workbookName);
+		RecordFactoryInputStream rs = new RecordFactoryInputStream(is, false);
+		int substream = -1;
+		int depth = 0;
+		Record record;
+		while ((record = rs.nextRecord()) != null) {
+			switch (record.getSid()) {
+			case BOFRecord.sid:
+				if (depth == 0) {
+					substream++;
+					if (substream == sheetIndex + 1) {
+						return new SheetRecordStream(sheetFs, is, rs);
+					}
+				}
+				depth++;
+				break;
+			case EOFRecord.sid:
+				depth--;
+				break;
+			default:
+				break;
+			}
+		}
+		is.close();
+		throw new IOException(MessageFormat.format("not found sheet substream. index={0}", sheetIndex));
+	}
+
+	@Override
+	public boolean isDate1904() {
+		return globalWorkbook.getInternalWorkbook().isUsing1904DateWindowing();
+	}
+
+	@Override
+	protected CellStyle readCellStyle(int idx) {
+		return globalWorkbook.getCellStyleAt(idx);
+	}
+
+	@Override
+	public int getNumCellStyles() {
+		return globalWorkbook.getNumCellStyles();
+	}
+
+	@Override
+	public Font getFontAt(short idx) {
+		return globalWorkbook.getFontAt(idx);
+	}
+
+	@Override
+	public short getNumberOfFonts() {
+		return globalWorkbook.getNumberOfFonts();
+	}
+
+	@Override
+	public void close() throws IOException {
+		super.close();
+		fs.close();
+	}
+}
@@ -0,0 +1,177 @@
+package org.embulk.parser.poi_excel.reader.stream.xssf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.util.SAXHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * shared strings of xlsx. the entries can be read while the table is being loaded by another thread.
+ * <p>
+ * the phonetic runs are excluded as the usermodel reader.
+ * </p>
+ */
+class XssfSharedStrings extends DefaultHandler {
+	private static final String NS_SPREADSHEETML = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	private final ArrayList<String> strings = new ArrayList<>();
+	private boolean loaded;
+	private boolean waiting;
+	private Throwable error;
+
+	// used by the loading thread
+	private final StringBuilder characters = new StringBuilder();
+	private boolean tIsOpen;
+	private boolean inRPh;
+
+	/**
+	 * load the entries. called once.
+	 *
+	 * @param part
+	 *            shared strings part. null if the workbook has no shared strings
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws SAXException
+	 *             if the part is broken
+	 */
+	public void load(PackagePart part) throws IOException, SAXException {
+		try {
+			if (part != null) {
+				try (InputStream is = part.getInputStream()) {
+					parse(is);
+				}
+			}
+		} catch (Throwable t) {
+			synchronized (this) {
+				this.error = t;
+			}
+			throw t;
+		} finally {
+			synchronized (this) {
+				this.loaded = true;
+				notifyAll();
+			}
+		}
+	}
+
+	private void parse(InputStream is) throws IOException, SAXException {
+		PushbackInputStream in = new PushbackInputStream(is, 1);
+		int c = in.read();
+		if (c < 0) {
+			return;
+		}
+		in.unread(c);
+
+		XMLReader reader;
+		try {
+			reader = SAXHelper.newXMLReader();
+		} catch (ParserConfigurationException e) {
+			throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage(), e);
+		}
+		reader.setContentHandler(this);
+		reader.parse(new InputSource(in));
+	}
+
+	/**
+	 * @param idx
+	 *            index of the entry
+	 * @return entry. waits until the entry is loaded
+	 */
+	public synchronized String getEntryAt(int idx) {
+		while (idx >= strings.size() && !loaded) {
+			waiting = true;
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+		if (idx >= strings.size() && error != null) {
+			throw new RuntimeException("shared strings load error", error);
+		}
+		return strings.get(idx);
+	}
+
+	private synchronized void add(String s) {
+		strings.add(s);
+		if (waiting) {
+			waiting = false;
+			notifyAll();
+		}
+	}
+
+	private synchronized void ensureCapacity(int capacity) {
+		strings.ensureCapacity(capacity);
+	}
+
+	// DefaultHandler
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+		if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+			return;
+		}
+
+		switch (localName) {
+		case "sst":
+			String uniqueCount = attributes.getValue("uniqueCount");
+			if (uniqueCount != null) {
+				ensureCapacity(Integer.parseInt(uniqueCount));
+			}
+			break;
+		case "si":
+			characters.setLength(0);
+			break;
+		case "t":
+			tIsOpen = true;
+			break;
+		case "rPh":
+			inRPh = true;
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+			return;
+		}
+
+		switch (localName) {
+		case "si":
+			if (Thread.currentThread().isInterrupted()) {
+				throw new SAXException("shared strings loading is cancelled");
+			}
+			add(characters.toString());
+			break;
+		case "t":
+			tIsOpen = false;
+			break;
+		case "rPh":
+			inRPh = false;
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		if (tIsOpen && !inRPh) {
+			characters.append(ch, start, length);
+		}
+	}
+}
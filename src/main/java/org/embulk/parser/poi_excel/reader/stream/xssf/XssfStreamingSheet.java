@@ -0,0 +1,530 @@
+package org.embulk.parser.poi_excel.reader.stream.xssf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.StaxHelper;
+import org.apache.poi.util.Units;
+import org.apache.poi.xssf.model.CommentsTable;
+import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.embulk.parser.poi_excel.reader.stream.StreamingCell;
+import org.embulk.parser.poi_excel.reader.stream.StreamingComment;
+import org.embulk.parser.poi_excel.reader.stream.StreamingCell.FormulaSource;
+import org.embulk.parser.poi_excel.reader.stream.StreamingRow;
+import org.embulk.parser.poi_excel.reader.stream.StreamingSheet;
+import org.embulk.spi.Exec;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTComment;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCommentList;
+import org.slf4j.Logger;
+
+/**
+ * streaming sheet of xlsx. reads the sheet part by StAX.
+ */
+public class XssfStreamingSheet extends StreamingSheet {
+	private final Logger log = Exec.getLogger(getClass());
+
+	private static final XMLInputFactory XML_INPUT_FACTORY = StaxHelper.newXMLInputFactory();
+
+	private final PackagePart sheetPart;
+
+	public XssfStreamingSheet(XssfStreamingWorkbook workbook, String sheetName, PackagePart sheetPart) {
+		super(workbook, sheetName);
+		this.sheetPart = sheetPart;
+	}
+
+	@Override
+	public XssfStreamingWorkbook getWorkbook() {
+		return (XssfStreamingWorkbook) super.getWorkbook();
+	}
+
+	private XMLStreamReader openXml(InputStream is) throws IOException {
+		try {
+			return XML_INPUT_FACTORY.createXMLStreamReader(is);
+		} catch (XMLStreamException e) {
+			is.close();
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	protected RowReader openRowReader() throws IOException {
+		InputStream is = sheetPart.getInputStream();
+		return new XssfRowReader(is, openXml(is));
+	}
+
+	@Override
+	protected List<CellRangeAddress> readMergedRegions() throws IOException {
+		List<CellRangeAddress> list = new ArrayList<>();
+		try (InputStream is = sheetPart.getInputStream()) {
+			XMLStreamReader xml = openXml(is);
+			try {
+				while (xml.hasNext()) {
+					if (xml.next() == XMLStreamConstants.START_ELEMENT && "mergeCell".equals(xml.getLocalName())) {
+						String ref = xml.getAttributeValue(null, "ref");
+						if (ref != null) {
+							list.add(CellRangeAddress.valueOf(ref));
+						}
+					}
+				}
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		return list;
+	}
+
+	@Override
+	protected Map<CellAddress, Comment> readCellComments() throws IOException {
+		PackagePart commentsPart = getRelatedPart(XSSFRelation.SHEET_COMMENTS);
+		if (commentsPart == null) {
+			return Collections.emptyMap();
+		}
+		Map<CellAddress, VmlNote> noteMap = readVmlNotes();
+
+		CommentsTable table = new CommentsTable(commentsPart);
+		Map<CellAddress, Comment> map = new HashMap<>();
+		CTCommentList list = table.getCTComments().getCommentList();
+		if (list == null) {
+			return map;
+		}
+		for (CTComment ct : list.getCommentArray()) {
+			CellAddress address = new CellAddress(ct.getRef());
+			String author = table.getAuthor(ct.getAuthorId());
+			XSSFRichTextString string = new XSSFRichTextString(ct.getText());
+			VmlNote note = noteMap.get(address);
+			boolean visible = (note != null) && note.visible;
+			ClientAnchor anchor = (note != null) ? note.anchor : null;
+			map.put(address, new StreamingComment(address, author, string, visible, anchor));
+		}
+		return map;
+	}
+
+	private PackagePart getRelatedPart(XSSFRelation relation) throws IOException {
+		try {
+			for (PackageRelationship rel : sheetPart.getRelationshipsByType(relation.getRelation())) {
+				return sheetPart.getRelatedPart(rel);
+			}
+		} catch (InvalidFormatException e) {
+			throw new IOException(e);
+		}
+		return null;
+	}
+
+	private static class VmlNote {
+		private boolean visible;
+		private ClientAnchor anchor;
+	}
+
+	/**
+	 * @return shapes of the comments in the legacy drawing (VML)
+	 */
+	private Map<CellAddress, VmlNote> readVmlNotes() throws IOException {
+		Map<CellAddress, VmlNote> map = new HashMap<>();
+		PackagePart vmlPart = getRelatedPart(XSSFRelation.VML_DRAWINGS);
+		if (vmlPart == null) {
+			return map;
+		}
+
+		String text;
+		try (InputStream is = vmlPart.getInputStream()) {
+			// VML of Excel is not well-formed XML. (same as XSSFVMLDrawing)
+			text = new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8).replace("<br>", "<br/>");
+		}
+		try {
+			XMLStreamReader xml = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(text));
+			try {
+				String style = null;
+				boolean note = false;
+				String anchor = null;
+				int row = -1, column = -1;
+				while (xml.hasNext()) {
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						switch (xml.getLocalName()) {
+						case "shape":
+							style = xml.getAttributeValue(null, "style");
+							break;
+						case "ClientData":
+							note = "Note".equals(xml.getAttributeValue(null, "ObjectType"));
+							anchor = null;
+							row = column = -1;
+							break;
+						case "Anchor":
+							anchor = xml.getElementText();
+							break;
+						case "Row":
+							row = Integer.parseInt(xml.getElementText().trim());
+							break;
+						case "Column":
+							column = Integer.parseInt(xml.getElementText().trim());
+							break;
+						default:
+							break;
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT && "ClientData".equals(xml.getLocalName())) {
+						if (note && row >= 0 && column >= 0) {
+							VmlNote shape = new VmlNote();
+							shape.visible = (style != null) && style.contains("visibility:visible");
+							shape.anchor = (anchor != null) ? toClientAnchor(anchor) : null;
+							map.put(new CellAddress(row, column), shape);
+						}
+						note = false;
+					}
+				}
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		return map;
+	}
+
+	// same as XSSFComment#getClientAnchor()
+	private static ClientAnchor toClientAnchor(String anchor) {
+		String[] ss = anchor.split(",");
+		int[] pos = new int[8];
+		for (int i = 0; i < pos.length && i < ss.length; i++) {
+			pos[i] = Integer.parseInt(ss[i].trim());
+		}
+		return new XSSFClientAnchor(pos[1] * Units.EMU_PER_PIXEL, pos[3] * Units.EMU_PER_PIXEL, pos[5]
+				* Units.EMU_PER_PIXEL, pos[7] * Units.EMU_PER_PIXEL, pos[0], pos[2], pos[4], pos[6]);
+	}
+
+	private class XssfRowReader implements RowReader {
+		private final InputStream is;
+		private final XMLStreamReader xml;
+
+		private int nextRowIndex = 0;
+		private final Map<String, SharedFormulaSource> sharedFormulaMap = new HashMap<>();
+		private final StringBuilder textBuffer = new StringBuilder(64);
+
+		public XssfRowReader(InputStream is, XMLStreamReader xml) {
+			this.is = is;
+			this.xml = xml;
+		}
+
+		@Override
+		public StreamingRow readRow() throws IOException {
+			try {
+				while (xml.hasNext()) {
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						if ("row".equals(xml.getLocalName())) {
+							String r = xml.getAttributeValue(null, "r");
+							int rowIndex = (r != null) ? Integer.parseInt(r) - 1 : nextRowIndex;
+							this.nextRowIndex = rowIndex + 1;
+
+							StreamingRow row = new StreamingRow(XssfStreamingSheet.this, rowIndex);
+							readCells(row);
+							return row;
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						if ("sheetData".equals(xml.getLocalName())) {
+							break;
+						}
+					}
+				}
+				return null;
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		private void readCells(StreamingRow row) throws XMLStreamException {
+			int nextColumnIndex = 0;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					if ("c".equals(xml.getLocalName())) {
+						String r = xml.getAttributeValue(null, "r");
+						int columnIndex = (r != null) ? parseColumnIndex(r) : nextColumnIndex;
+						nextColumnIndex = columnIndex + 1;
+
+						if (isCellRequired(row.getRowNum(), columnIndex)) {
+							readCell(row.addCell(columnIndex));
+						} else {
+							skipCell(row.getRowNum(), columnIndex);
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if ("row".equals(xml.getLocalName())) {
+						return;
+					}
+				}
+			}
+		}
+
+		private void readCell(StreamingCell cell) throws XMLStreamException {
+			String type = xml.getAttributeValue(null, "t");
+			String s = xml.getAttributeValue(null, "s");
+			if (s != null) {
+				cell.setStyleIndex(Integer.parseInt(s));
+			}
+
+			String value = null;
+			String inlineString = null;
+			String formula = null;
+			String formulaType = null;
+			String sharedIndex = null;
+			String sharedRef = null;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					switch (xml.getLocalName()) {
+					case "v":
+						value = xml.getElementText();
+						break;
+					case "f":
+						formulaType = xml.getAttributeValue(null, "t");
+						sharedIndex = xml.getAttributeValue(null, "si");
+						sharedRef = xml.getAttributeValue(null, "ref");
+						formula = xml.getElementText();
+						break;
+					case "is":
+						inlineString = readInlineString();
+						break;
+					default:
+						break;
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if ("c".equals(xml.getLocalName())) {
+						break;
+					}
+				}
+			}
+
+			setValue(cell, type, value, inlineString);
+
+			if (formula != null) {
+				if ("shared".equals(formulaType) && sharedIndex != null) {
+					SharedFormulaSource source;
+					if (sharedRef != null && !formula.isEmpty()) {
+						source = new SharedFormulaSource(cell.getRowIndex(), cell.getColumnIndex(), formula);
+						sharedFormulaMap.put(sharedIndex, source);
+					} else {
+						source = sharedFormulaMap.get(sharedIndex);
+					}
+					if (source != null) {
+						cell.setFormula(source);
+					} else {
+						cell.setFormula(formula);
+					}
+				} else {
+					cell.setFormula(formula);
+				}
+			}
+		}
+
+		// the master of shared formula is registered even if the cell is skipped
+		private void skipCell(int rowIndex, int columnIndex) throws XMLStreamException {
+			int depth = 1;
+			while (depth > 0 && xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					if ("f".equals(xml.getLocalName()) && "shared".equals(xml.getAttributeValue(null, "t"))
+							&& xml.getAttributeValue(null, "ref") != null) {
+						String sharedIndex = xml.getAttributeValue(null, "si");
+						String formula = xml.getElementText();
+						if (sharedIndex != null && !formula.isEmpty()) {
+							sharedFormulaMap.put(sharedIndex, new SharedFormulaSource(rowIndex, columnIndex, formula));
+						}
+					} else {
+						depth++;
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+
+		private String readInlineString() throws XMLStreamException {
+			StringBuilder sb = textBuffer;
+			sb.setLength(0);
+			int depth = 1;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("t".equals(name)) {
+						sb.append(xml.getElementText());
+					} else if ("rPh".equals(name)) {
+						skipElement();
+					} else {
+						depth++;
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if (--depth == 0) {
+						break;
+					}
+				}
+			}
+			return sb.toString();
+		}
+
+		private void skipElement() throws XMLStreamException {
+			int depth = 1;
+			while (depth > 0 && xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+
+		private void setValue(StreamingCell cell, String type, String value, String inlineString) {
+			if (type == null) {
+				type = "n";
+			}
+			switch (type) {
+			case "s":
+				if (value != null) {
+					int index = Integer.parseInt(value);
+					cell.setString(getWorkbook().getSharedStrings().getEntryAt(index));
+				}
+				break;
+			case "inlineStr":
+				cell.setString((inlineString != null) ? inlineString : (value != null) ? value : "");
+				break;
+			case "str":
+				cell.setString((value != null) ? value : "");
+				break;
+			case "b":
+				if (value != null) {
+					cell.setBoolean("1".equals(value) || "true".equalsIgnoreCase(value));
+				}
+				break;
+			case "e":
+				if (value != null) {
+					cell.setError(FormulaError.forString(value).getCode());
+				}
+				break;
+			case "d":
+				if (value != null) {
+					cell.setNumeric(parseDate(value));
+				}
+				break;
+			case "n":
+			default:
+				if (value != null && !value.isEmpty()) {
+					cell.setNumeric(value);
+				}
+				break;
+			}
+		}
+
+		private double parseDate(String value) {
+			try {
+				GregorianCalendar calendar = DatatypeFactory.newInstance().newXMLGregorianCalendar(value)
+						.toGregorianCalendar();
+				return DateUtil.getExcelDate(calendar, getWorkbook().isDate1904());
+			} catch (DatatypeConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				xml.close();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			} finally {
+				is.close();
+			}
+		}
+	}
+
+	// column part of the cell reference such as "AB12"
+	static int parseColumnIndex(String ref) {
+		int column = 0;
+		for (int i = 0; i < ref.length(); i++) {
+			char c = ref.charAt(i);
+			if ('A' <= c && c <= 'Z') {
+				column = column * 26 + (c - 'A' + 1);
+			} else if ('a' <= c && c <= 'z') {
+				column = column * 26 + (c - 'a' + 1);
+			} else if (c != '$') {
+				break;
+			}
+		}
+		return column - 1;
+	}
+
+	/**
+	 * formula of the cell which shares the formula of the master cell. converted when used.
+	 */
+	private class SharedFormulaSource implements FormulaSource {
+		private final int masterRowIndex;
+		private final int masterColumnIndex;
+		private final String masterFormula;
+
+		public SharedFormulaSource(int rowIndex, int columnIndex, String formula) {
+			this.masterRowIndex = rowIndex;
+			this.masterColumnIndex = columnIndex;
+			this.masterFormula = formula;
+		}
+
+		@Override
+		public String getFormula(StreamingCell cell) {
+			int rowOffset = cell.getRowIndex() - masterRowIndex;
+			int columnOffset = cell.getColumnIndex() - masterColumnIndex;
+			if (rowOffset == 0 && columnOffset == 0) {
+				return masterFormula;
+			}
+
+			XssfStreamingWorkbook book = getWorkbook();
+			try {
+				XSSFEvaluationWorkbook fpb = XSSFEvaluationWorkbook.create(book.getFormulaWorkbook());
+				int sheetIndex = book.getSheetIndex(XssfStreamingSheet.this);
+				Ptg[] ptgs = FormulaParser.parse(masterFormula, fpb, FormulaType.CELL, sheetIndex, masterRowIndex);
+				SharedFormula sf = new SharedFormula(SpreadsheetVersion.EXCEL2007);
+				Ptg[] fmla = sf.convertSharedFormulas(ptgs, rowOffset, columnOffset);
+				return FormulaRenderer.toFormulaString(fpb, fmla);
+			} catch (Exception e) {
+				log.warn(MessageFormat.format("shared formula convert error. formula={0}, cell={1}!{2}", masterFormula,
+						getSheetName(), cell.getAddress()), e);
+				return masterFormula;
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package org.embulk.parser.poi_excel.reader.stream.xssf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFReader.SheetIterator;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.model.ThemesTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlException;
+import org.embulk.parser.poi_excel.reader.stream.StreamingWorkbook;
+import org.embulk.spi.Exec;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbookPr;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.slf4j.Logger;
+import org.xml.sax.SAXException;
+
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * streaming workbook of xlsx. the sheets are parsed by StAX and the cells are not kept in memory.
+ */
+public class XssfStreamingWorkbook extends StreamingWorkbook {
+	private final Logger log = Exec.getLogger(getClass());
+
+	private final OPCPackage pkg;
+	private final XssfSharedStrings sharedStrings = new XssfSharedStrings();
+	private final Future<StylesTable> stylesTable;
+	private final boolean date1904;
+
+	private ExecutorService loader; // parallel load
+	private XSSFWorkbook formulaWorkbook;
+
+	public XssfStreamingWorkbook(OPCPackage pkg) throws IOException {
+		this(pkg, false);
+	}
+
+	/**
+	 * @param pkg
+	 *            package. reverted if the workbook cannot be read
+	 * @param parallelLoad
+	 *            load the shared strings and the styles by the background threads while the sheets are read
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public XssfStreamingWorkbook(OPCPackage pkg, boolean parallelLoad) throws IOException {
+		this.pkg = pkg;
+		try {
+			XSSFReader reader = new XSSFReader(pkg);
+
+			// the parts are resolved by this thread, and only parsed by the loader threads
+			final PackagePart sharedStringsPart = getPart(pkg, XSSFRelation.SHARED_STRINGS);
+			final PackagePart stylesPart = getPart(pkg, XSSFRelation.STYLES);
+			final PackagePart themePart = getPart(pkg, XSSFRelation.THEME);
+			if (parallelLoad) {
+				this.loader = Executors.newFixedThreadPool(2, new LoaderThreadFactory());
+				loader.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws IOException, SAXException {
+						sharedStrings.load(sharedStringsPart);
+						return null;
+					}
+				});
+				this.stylesTable = loader.submit(new Callable<StylesTable>() {
+
+					@Override
+					public StylesTable call() throws IOException {
+						return readStylesTable(stylesPart, themePart);
+					}
+				});
+				loader.shutdown();
+			} else {
+				sharedStrings.load(sharedStringsPart);
+				this.stylesTable = Futures.immediateFuture(readStylesTable(stylesPart, themePart));
+			}
+			this.date1904 = readDate1904(reader);
+
+			SheetIterator i = (SheetIterator) reader.getSheetsData();
+			while (i.hasNext()) {
+				i.next().close();
+				addSheet(new XssfStreamingSheet(this, i.getSheetName(), i.getSheetPart()));
+			}
+		} catch (OpenXML4JException | SAXException | XmlException e) {
+			shutdownLoader();
+			pkg.revert();
+			throw new IOException(e);
+		} catch (IOException | RuntimeException e) {
+			shutdownLoader();
+			pkg.revert();
+			throw e;
+		}
+	}
+
+	private static PackagePart getPart(OPCPackage pkg, XSSFRelation relation) {
+		List<PackagePart> parts = pkg.getPartsByContentType(relation.getContentType());
+		return parts.isEmpty() ? null : parts.get(0);
+	}
+
+	// same as XSSFReader#getStylesTable()
+	private static StylesTable readStylesTable(PackagePart stylesPart, PackagePart themePart) throws IOException {
+		if (stylesPart == null) {
+			return null;
+		}
+		StylesTable styles = new StylesTable(stylesPart);
+		if (themePart != null) {
+			styles.setTheme(new ThemesTable(themePart));
+		}
+		return styles;
+	}
+
+	private static boolean readDate1904(XSSFReader reader) throws IOException, OpenXML4JException, XmlException {
+		try (InputStream is = reader.getWorkbookData()) {
+			CTWorkbookPr pr = WorkbookDocument.Factory.parse(is).getWorkbook().getWorkbookPr();
+			return pr != null && pr.getDate1904();
+		}
+	}
+
+	XssfSharedStrings getSharedStrings() {
+		return sharedStrings;
+	}
+
+	private StylesTable getStylesTable() {
+		try {
+			return stylesTable.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("styles load error", e.getCause());
+		}
+	}
+
+	/**
+	 * @return empty workbook which has the same sheet names (for formula parsing)
+	 */
+	synchronized XSSFWorkbook getFormulaWorkbook() {
+		if (formulaWorkbook == null) {
+			XSSFWorkbook book = new XSSFWorkbook();
+			for (int i = 0; i < getNumberOfSheets(); i++) {
+				book.createSheet(getSheetName(i));
+			}
+			this.formulaWorkbook = book;
+		}
+		return formulaWorkbook;
+	}
+
+	@Override
+	public boolean isDate1904() {
+		return date1904;
+	}
+
+	@Override
+	protected CellStyle readCellStyle(int idx) {
+		return getStylesTable().getStyleAt(idx);
+	}
+
+	@Override
+	public int getNumCellStyles() {
+		return getStylesTable().getNumCellStyles();
+	}
+
+	@Override
+	public Font getFontAt(short idx) {
+		return getStylesTable().getFontAt(idx);
+	}
+
+	@Override
+	public short getNumberOfFonts() {
+		return (short) getStylesTable().getFonts().size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		super.close();
+		shutdownLoader();
+		pkg.revert();
+	}
+
+	private void shutdownLoader() {
+		if (loader == null) {
+			return;
+		}
+
+		// stop loading the shared strings (if the sheets are not read to the end)
+		loader.shutdownNow();
+		try {
+			while (!loader.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.info("waiting for the loader threads to stop");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class LoaderThreadFactory implements ThreadFactory {
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = factory.newThread(r);
+			thread.setName("poi_excel-load-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package org.embulk.parser.poi_excel.visitor;
 
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,35 +26,107 @@ public abstract class AbstractPoiExcelCellAttributeVisitor<A> {
 	protected final PoiExcelVisitorValue visitorValue;
 	protected final PageBuilder pageBuilder;
 
+	/** cached values (key=column bean, index=cell style index) */
+	private final Map<PoiExcelColumnBean, Object[]> valueCacheMap = new IdentityHashMap<>();
+
+	private static final Object NULL_VALUE = new Object();
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
 	public AbstractPoiExcelCellAttributeVisitor(PoiExcelVisitorValue visitorValue) {
 		this.visitorValue = visitorValue;
 		this.pageBuilder = visitorValue.getPageBuilder();
 	}
 
 	public void visit(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
+		Object value;
+		int index = getCacheIndex(cell);
+		if (index < 0) {
+			value = getValue(bean, cell);
+		} else {
+			Object[] cache = valueCacheMap.get(bean);
+			if (cache == null || index >= cache.length) {
+				cache = (cache == null) ? new Object[Math.max(64, index + 1)] : Arrays.copyOf(cache,
+						Math.max(cache.length * 2, index + 1));
+				valueCacheMap.put(bean, cache);
+			}
+
+			value = cache[index];
+			if (value == null) {
+				value = getValue(bean, cell);
+				cache[index] = (value != null) ? value : NULL_VALUE;
+			} else if (value == NULL_VALUE) {
+				value = null;
+			}
+		}
+
+		visitValue(bean, cell, value, visitor);
+	}
+
+	/**
+	 * visit the attributes of the source which is not got from the cell.
+	 *
+	 * @param bean
+	 *            column bean
+	 * @param cell
+	 *            cell (nullable)
+	 * @param source
+	 *            attribute source (nullable)
+	 * @param visitor
+	 *            visitor
+	 */
+	protected final void visitSource(PoiExcelColumnBean bean, Cell cell, A source, CellVisitor visitor) {
+		Object value = (source != null) ? getValue(bean, cell, source) : null;
+		visitValue(bean, cell, value, visitor);
+	}
+
+	private void visitValue(PoiExcelColumnBean bean, Cell cell, Object value, CellVisitor visitor) {
+		Column column = bean.getColumn();
+		if (value == null) {
+			pageBuilder.setNull(column);
+		} else if (bean.getValueTypeSuffix() == null) {
+			visitor.visitCellValueString(column, cell, (String) value);
+		} else {
+			visitKeyValue(column, cell, value, visitor);
+		}
+	}
+
+	private Object getValue(PoiExcelColumnBean bean, Cell cell) {
 		A source = getAttributeSource(bean, cell);
 		if (source == null) {
-			Column column = bean.getColumn();
-			pageBuilder.setNull(column);
-			return;
+			return null;
 		}
+		return getValue(bean, cell, source);
+	}
 
+	private Object getValue(PoiExcelColumnBean bean, Cell cell, A source) {
 		String suffix = bean.getValueTypeSuffix();
 		if (suffix != null) {
-			visitKey(bean, suffix, cell, source, visitor);
+			Object value = getAttributeValue(bean.getColumn(), cell, source, suffix);
+			if (value instanceof Map) {
+				return convertJsonString(value);
+			}
+			return value;
 		} else {
-			visitJson(bean, cell, source, visitor);
+			return getJson(bean, cell, source);
 		}
 	}
 
 	protected abstract A getAttributeSource(PoiExcelColumnBean bean, Cell cell);
 
-	private void visitKey(PoiExcelColumnBean bean, String key, Cell cell, A source, CellVisitor visitor) {
-		Column column = bean.getColumn();
-		Object value = getAttributeValue(column, cell, source, key);
-		if (value == null) {
-			pageBuilder.setNull(column);
-		} else if (value instanceof String) {
+	/**
+	 * index of the value cache.
+	 *
+	 * @param cell
+	 *            cell
+	 * @return index (same index returns the same attribute values), or -1 if not cacheable
+	 */
+	protected int getCacheIndex(Cell cell) {
+		return -1;
+	}
+
+	private void visitKeyValue(Column column, Cell source, Object value, CellVisitor visitor) {
+		if (value instanceof String) {
 			visitor.visitCellValueString(column, source, (String) value);
 		} else if (value instanceof Long) {
 			visitor.visitValueLong(column, source, (Long) value);
@@ -60,15 +134,13 @@ public abstract class AbstractPoiExcelCellAttributeVisitor<A> {
 			visitor.visitCellValueBoolean(column, source, (Boolean) value);
 		} else if (value instanceof Double) {
 			visitor.visitCellValueNumeric(column, source, (Double) value);
-		} else if (value instanceof Map) {
-			visitor.visitCellValueString(column, source, convertJsonString(value));
 		} else {
 			throw new IllegalStateException(MessageFormat.format("unsupported conversion. type={0}, value={1}", value
 					.getClass().getName(), value));
 		}
 	}
 
-	private void visitJson(PoiExcelColumnBean bean, Cell cell, A source, CellVisitor visitor) {
+	private String getJson(PoiExcelColumnBean bean, Cell cell, A source) {
 		Column column = bean.getColumn();
 
 		Map<String, Object> result;
@@ -80,8 +152,7 @@ public abstract class AbstractPoiExcelCellAttributeVisitor<A> {
 			result = getAllValues(column, cell, source);
 		}
 
-		String json = convertJsonString(result);
-		visitor.visitCellValueString(column, cell, json);
+		return convertJsonString(result);
 	}
 
 	protected final Map<String, Object> getSpecifiedValues(Column column, Cell cell, A source, List<String> keyList) {
@@ -145,8 +216,7 @@ public abstract class AbstractPoiExcelCellAttributeVisitor<A> {
 
 	protected final String convertJsonString(Object result) {
 		try {
-			ObjectMapper mapper = new ObjectMapper();
-			return mapper.writeValueAsString(result);
+			return MAPPER.writeValueAsString(result);
 		} catch (JsonProcessingException e) {
 			throw new RuntimeException(e);
 		}
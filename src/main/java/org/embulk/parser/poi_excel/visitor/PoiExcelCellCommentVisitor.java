@@ -2,13 +2,18 @@ package org.embulk.parser.poi_excel.visitor;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.ClientAnchor;
 import org.apache.poi.ss.usermodel.Comment;
 import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.visitor.embulk.CellVisitor;
 import org.embulk.spi.Column;
 
 public class PoiExcelCellCommentVisitor extends AbstractPoiExcelCellAttributeVisitor<Comment> {
@@ -17,9 +22,61 @@ public class PoiExcelCellCommentVisitor extends AbstractPoiExcelCellAttributeVis
 		super(visitorValue);
 	}
 
+	/** comment index of each sheet (cell.getCellComment() searches the comments every time) */
+	private final Map<Sheet, Map<CellAddress, ? extends Comment>> commentIndexMap = new IdentityHashMap<>();
+
 	@Override
 	protected Comment getAttributeSource(PoiExcelColumnBean bean, Cell cell) {
-		return cell.getCellComment();
+		return getComment(cell.getSheet(), cell.getRowIndex(), cell.getColumnIndex());
+	}
+
+	/**
+	 * visit the comment of the position which has no cell.
+	 *
+	 * @param bean
+	 *            column bean
+	 * @param sheet
+	 *            sheet
+	 * @param rowIndex
+	 *            row index (0 origin)
+	 * @param columnIndex
+	 *            column index (0 origin)
+	 * @param visitor
+	 *            visitor
+	 */
+	public void visit(PoiExcelColumnBean bean, Sheet sheet, int rowIndex, int columnIndex, CellVisitor visitor) {
+		Comment comment = getComment(sheet, rowIndex, columnIndex);
+		visitSource(bean, null, comment, visitor);
+	}
+
+	protected Comment getComment(Sheet sheet, int rowIndex, int columnIndex) {
+		Map<CellAddress, ? extends Comment> index = commentIndexMap.get(sheet);
+		if (index == null) {
+			index = createCommentIndex(sheet);
+			commentIndexMap.put(sheet, index);
+		}
+		if (index.isEmpty()) {
+			return null;
+		}
+		return index.get(new CellAddress(rowIndex, columnIndex));
+	}
+
+	/**
+	 * @param sheet
+	 *            sheet
+	 * @return comments of the sheet
+	 */
+	public static Map<CellAddress, ? extends Comment> createCommentIndex(Sheet sheet) {
+		Map<CellAddress, ? extends Comment> index = sheet.getCellComments();
+		if (sheet instanceof XSSFSheet && !index.isEmpty()) {
+			// the comments of XSSFSheet#getCellComments() do not have the VML shape (visible, client anchor)
+			Map<CellAddress, Comment> map = new HashMap<>(index.size() * 2);
+			for (CellAddress address : index.keySet()) {
+				map.put(address, sheet.getCellComment(address));
+			}
+			index = map;
+		}
+		return index;
 	}
 
 	protected boolean acceptKey(String key) {
@@ -26,6 +26,12 @@ public class PoiExcelCellFontVisitor extends AbstractPoiExcelCellAttributeVisito
 		return book.getFontAt(index);
 	}
 
+	@Override
+	protected int getCacheIndex(Cell cell) {
+		// the style/font/color tables belong to the workbook
+		return cell.getCellStyle().getIndex() & 0xffff;
+	}
+
 	@Override
 	protected Map<String, AttributeSupplier<Font>> getAttributeSupplierMap() {
 		return SUPPLIER_MAP;
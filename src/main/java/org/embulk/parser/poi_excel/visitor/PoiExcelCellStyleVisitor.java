@@ -23,6 +23,12 @@ public class PoiExcelCellStyleVisitor extends AbstractPoiExcelCellAttributeVisit
 		return cell.getCellStyle();
 	}
 
+	@Override
+	protected int getCacheIndex(Cell cell) {
+		// the style/font/color tables belong to the workbook
+		return cell.getCellStyle().getIndex() & 0xffff;
+	}
+
 	protected boolean acceptKey(String key) {
 		if (key.equals("border")) {
 			return false;
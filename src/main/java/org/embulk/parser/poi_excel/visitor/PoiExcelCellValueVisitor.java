@@ -1,26 +1,34 @@
 package org.embulk.parser.poi_excel.visitor;
 
 import java.text.MessageFormat;
-import java.util.List;
 
+import org.apache.poi.ss.formula.WorkbookEvaluator;
+import org.apache.poi.ss.formula.WorkbookEvaluatorProvider;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumericValueEval;
+import org.apache.poi.ss.formula.eval.StringValueEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.CellValue;
-import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellReference;
 import org.embulk.parser.poi_excel.PoiExcelColumnValueType;
-import org.embulk.parser.poi_excel.PoiExcelParserPlugin.FormulaReplaceTask;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean.ErrorStrategy;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean.FormulaHandling;
+import org.embulk.parser.poi_excel.bean.util.FormulaReplace;
+import org.embulk.parser.poi_excel.bean.util.SearchMergedCell;
+import org.embulk.parser.poi_excel.reader.stream.StreamingCell;
 import org.embulk.parser.poi_excel.visitor.embulk.CellVisitor;
 import org.embulk.parser.poi_excel.visitor.util.MergedRegionFinder;
+import org.embulk.parser.poi_excel.visitor.util.MergedRegionSweepLine;
+import org.embulk.parser.poi_excel.visitor.util.MergedRegionSweepLine.ActiveRegion;
 import org.embulk.spi.Column;
 import org.embulk.spi.Exec;
 import org.embulk.spi.PageBuilder;
@@ -45,7 +53,7 @@ public class PoiExcelCellValueVisitor {
 		CellType cellType = cell.getCellTypeEnum();
 		switch (cellType) {
 		case NUMERIC:
-			visitor.visitCellValueNumeric(column, cell, cell.getNumericCellValue());
+			visitCellValueNumeric(bean, cell, visitor);
 			return;
 		case STRING:
 			visitor.visitCellValueString(column, cell, cell.getStringCellValue());
@@ -72,11 +80,47 @@ public class PoiExcelCellValueVisitor {
 		}
 	}
 
+	protected void visitCellValueNumeric(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
+		Column column = bean.getColumn();
+
+		if (cell instanceof StreamingCell) {
+			String text = ((StreamingCell) cell).getNumericText();
+			if (text != null) {
+				visitor.visitCellValueNumericText(column, cell, text);
+				return;
+			}
+		}
+		visitor.visitCellValueNumeric(column, cell, cell.getNumericCellValue());
+	}
+
 	protected void visitCellValueBlank(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
 		assert cell.getCellTypeEnum() == CellType.BLANK;
 
 		Column column = bean.getColumn();
 
+		MergedRegionSweepLine sweepLine = getMergedRegionSweepLine(bean, cell);
+		if (sweepLine != null) {
+			ActiveRegion active = sweepLine.get(cell.getRowIndex(), cell.getColumnIndex());
+			if (active != null) {
+				Cell firstCell = active.getFirstCell();
+				if (firstCell == null) {
+					visitCellNull(column);
+					return;
+				}
+
+				if (firstCell.getCellTypeEnum() == CellType.BLANK) {
+					// do not move the sweep line back to the first row
+					visitor.visitCellValueBlank(column, firstCell);
+					return;
+				}
+				visitCellValue(bean, firstCell, visitor);
+				return;
+			}
+
+			visitor.visitCellValueBlank(column, cell);
+			return;
+		}
+
 		CellRangeAddress region = findRegion(bean, cell);
 		if (region != null) {
 			Row firstRow = cell.getSheet().getRow(region.getFirstRow());
@@ -99,6 +143,17 @@ public class PoiExcelCellValueVisitor {
 		visitor.visitCellValueBlank(column, cell);
 	}
 
+	// the rows of the sheet are read in ascending order when record_type=row
+	protected MergedRegionSweepLine getMergedRegionSweepLine(PoiExcelColumnBean bean, Cell cell) {
+		if (bean.getSearchMergedCell() != SearchMergedCell.SWEEP_LINE) {
+			return null;
+		}
+		if (bean.getCellAddress() != null || cell.getSheet() != visitorValue.getSheet()) {
+			return null;
+		}
+		return visitorValue.getSheetBean().getMergedRegionSweepLine();
+	}
+
 	protected CellRangeAddress findRegion(PoiExcelColumnBean bean, Cell cell) {
 		Sheet sheet = cell.getSheet();
 		int r = cell.getRowIndex();
@@ -112,6 +167,10 @@ public class PoiExcelCellValueVisitor {
 		assert cell.getCellTypeEnum() == CellType.FORMULA;
 
 		FormulaHandling handling = bean.getFormulaHandling();
+		if (cell instanceof StreamingCell) {
+			// reader=streaming does not have the workbook model to evaluate
+			handling = FormulaHandling.CASHED_VALUE;
+		}
 		switch (handling) {
 		case CASHED_VALUE:
 			visitCellValueFormulaCashedValue(bean, cell, visitor);
@@ -128,7 +187,7 @@ public class PoiExcelCellValueVisitor {
 		CellType cellType = cell.getCachedFormulaResultTypeEnum();
 		switch (cellType) {
 		case NUMERIC:
-			visitor.visitCellValueNumeric(column, cell, cell.getNumericCellValue());
+			visitCellValueNumeric(bean, cell, visitor);
 			return;
 		case STRING:
 			visitor.visitCellValueString(column, cell, cell.getStringCellValue());
@@ -151,42 +210,25 @@ public class PoiExcelCellValueVisitor {
 	protected void visitCellValueFormulaEvaluate(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
 		Column column = bean.getColumn();
 
-		List<FormulaReplaceTask> list = bean.getFormulaReplace();
-		if (!list.isEmpty()) {
-			String formula = cell.getCellFormula();
-			String old = formula;
-
-			for (FormulaReplaceTask replace : list) {
-				String regex = replace.getRegex();
-				String replacement = replace.getTo();
-
-				if (replacement.contains("${row}")) {
-					replacement = replacement.replace("${row}", Integer.toString(cell.getRowIndex() + 1));
-				}
-				if (replacement.contains("${column}")) {
-					replacement = replacement.replace("${column}",
-							CellReference.convertNumToColString(cell.getColumnIndex() + 1));
-				}
-
-				formula = formula.replaceAll(regex, replacement);
-			}
-
-			if (!formula.equals(old)) {
-				log.debug("formula replaced. old=\"{}\", new=\"{}\"", old, formula);
-				try {
-					cell.setCellFormula(formula);
-				} catch (Exception e) {
-					throw new RuntimeException(MessageFormat.format("setCellFormula error. formula={0}", formula), e);
-				}
+		String formula = null;
+		FormulaReplace replace = bean.getFormulaReplace();
+		if (!replace.isEmpty()) {
+			String old = cell.getCellFormula();
+			String s = replace.replace(old, cell.getRowIndex(), cell.getColumnIndex());
+			if (s != old) {
+				log.debug("formula replaced. old=\"{}\", new=\"{}\"", old, s);
+				formula = s;
 			}
 		}
 
 		CellValue cellValue;
 		try {
-			Workbook book = cell.getSheet().getWorkbook();
-			CreationHelper helper = book.getCreationHelper();
-			FormulaEvaluator evaluator = helper.createFormulaEvaluator();
-			cellValue = evaluator.evaluate(cell);
+			FormulaEvaluator evaluator = visitorValue.getFormulaEvaluator();
+			if (formula == null) {
+				cellValue = evaluator.evaluate(cell);
+			} else {
+				cellValue = evaluateFormula(evaluator, cell, formula);
+			}
 		} catch (Exception e) {
 			ErrorStrategy strategy = bean.getEvaluateErrorStrategy();
 			switch (strategy.getStrategy()) {
@@ -202,7 +244,8 @@ public class PoiExcelCellValueVisitor {
 				return;
 			}
 
-			throw new RuntimeException(MessageFormat.format("evaluate error. formula={0}", cell.getCellFormula()), e);
+			throw new RuntimeException(MessageFormat.format("evaluate error. formula={0}",
+					(formula != null) ? formula : cell.getCellFormula()), e);
 		}
 
 		CellType cellType = cellValue.getCellTypeEnum();
@@ -228,6 +271,29 @@ public class PoiExcelCellValueVisitor {
 		}
 	}
 
+	// evaluate the replaced formula at the position of the cell, without changing the cell
+	protected CellValue evaluateFormula(FormulaEvaluator evaluator, Cell cell, String formula) {
+		WorkbookEvaluator bookEvaluator = ((WorkbookEvaluatorProvider) evaluator)._getWorkbookEvaluator();
+		CellReference ref = new CellReference(cell.getSheet().getSheetName(), cell.getRowIndex(),
+				cell.getColumnIndex(), false, false);
+		ValueEval eval = bookEvaluator.evaluate(formula, ref);
+		eval = WorkbookEvaluator.dereferenceResult(eval, cell.getRowIndex(), cell.getColumnIndex());
+
+		if (eval instanceof BoolEval) {
+			return CellValue.valueOf(((BoolEval) eval).getBooleanValue());
+		}
+		if (eval instanceof NumericValueEval) {
+			return new CellValue(((NumericValueEval) eval).getNumberValue());
+		}
+		if (eval instanceof StringValueEval) {
+			return new CellValue(((StringValueEval) eval).getStringValue());
+		}
+		if (eval instanceof ErrorEval) {
+			return CellValue.getError(((ErrorEval) eval).getErrorCode());
+		}
+		throw new IllegalStateException(MessageFormat.format("unsupported eval class={0}", eval.getClass().getName()));
+	}
+
 	protected void visitCellValueError(PoiExcelColumnBean bean, Object cell, int errorCode, CellVisitor visitor) {
 		Column column = bean.getColumn();
 
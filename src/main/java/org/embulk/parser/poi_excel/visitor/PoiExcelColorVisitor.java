@@ -8,6 +8,7 @@ import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.Color;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.embulk.parser.poi_excel.reader.stream.hssf.HssfStreamingWorkbook;
 import org.embulk.parser.poi_excel.visitor.embulk.CellVisitor;
 import org.embulk.spi.Column;
 import org.embulk.spi.PageBuilder;
@@ -43,12 +44,17 @@ public class PoiExcelColorVisitor {
 	}
 
 	public Color getHssfColor(short colorIndex) {
-		HSSFWorkbook book = (HSSFWorkbook) visitorValue.getSheet().getWorkbook();
+		Workbook book = visitorValue.getSheet().getWorkbook();
 		return getHssfColor(book, colorIndex);
 	}
 
 	public static Color getHssfColor(Workbook workbook, short colorIndex) {
-		HSSFWorkbook book = (HSSFWorkbook) workbook;
+		HSSFWorkbook book;
+		if (workbook instanceof HssfStreamingWorkbook) {
+			book = ((HssfStreamingWorkbook) workbook).getGlobalWorkbook();
+		} else {
+			book = (HSSFWorkbook) workbook;
+		}
 		HSSFPalette palette = book.getCustomPalette();
 		HSSFColor color = palette.getColor(colorIndex);
 		return color;
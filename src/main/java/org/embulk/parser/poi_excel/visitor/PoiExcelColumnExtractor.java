@@ -0,0 +1,34 @@
+package org.embulk.parser.poi_excel.visitor;
+
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.bean.record.PoiExcelRecord;
+import org.embulk.parser.poi_excel.visitor.embulk.CellVisitor;
+import org.embulk.spi.Column;
+
+/**
+ * extractor of one Embulk column, resolved at the start of the sheet.
+ *
+ * @see PoiExcelColumnVisitor#createExtractors(org.embulk.spi.Schema)
+ */
+public abstract class PoiExcelColumnExtractor {
+
+	protected final Column column;
+	protected final PoiExcelColumnBean bean;
+	protected final CellVisitor visitor;
+
+	public PoiExcelColumnExtractor(Column column, PoiExcelColumnBean bean, CellVisitor visitor) {
+		this.column = column;
+		this.bean = bean;
+		this.visitor = visitor;
+	}
+
+	public final Column getColumn() {
+		return column;
+	}
+
+	public final PoiExcelColumnBean getColumnBean() {
+		return bean;
+	}
+
+	public abstract void extract(PoiExcelRecord record);
+}
@@ -1,6 +1,7 @@
 package org.embulk.parser.poi_excel.visitor;
 
 import java.text.MessageFormat;
+import java.util.List;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
@@ -14,9 +15,10 @@ import org.embulk.spi.Column;
 import org.embulk.spi.ColumnVisitor;
 import org.embulk.spi.Exec;
 import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
 import org.slf4j.Logger;
 
-public class PoiExcelColumnVisitor implements ColumnVisitor {
+public class PoiExcelColumnVisitor {
 	private final Logger log = Exec.getLogger(getClass());
 
 	protected final PoiExcelVisitorValue visitorValue;
@@ -35,127 +37,248 @@ public class PoiExcelColumnVisitor implements ColumnVisitor {
 		this.record = record;
 	}
 
-	@Override
-	public final void booleanColumn(Column column) {
-		visitCell0(column, factory.getBooleanCellVisitor());
-	}
+	// extractor
 
-	@Override
-	public final void longColumn(Column column) {
-		visitCell0(column, factory.getLongCellVisitor());
+	/**
+	 * resolve the value type and the Embulk type of each column at the start of the sheet.
+	 *
+	 * @param schema
+	 *            schema
+	 * @return extractors (index=column index)
+	 */
+	public PoiExcelColumnExtractor[] createExtractors(Schema schema) {
+		List<Column> columns = schema.getColumns();
+		PoiExcelColumnExtractor[] extractors = new PoiExcelColumnExtractor[columns.size()];
+		for (Column column : columns) {
+			PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
+			extractors[column.getIndex()] = newExtractor(column, bean, getCellVisitor(column));
+		}
+		return extractors;
 	}
 
-	@Override
-	public final void doubleColumn(Column column) {
-		visitCell0(column, factory.getDoubleCellVisitor());
-	}
+	protected CellVisitor getCellVisitor(Column column) {
+		final CellVisitor[] result = new CellVisitor[1];
+		column.visit(new ColumnVisitor() {
 
-	@Override
-	public final void stringColumn(Column column) {
-		visitCell0(column, factory.getStringCellVisitor());
-	}
+			@Override
+			public void booleanColumn(Column column) {
+				result[0] = factory.getBooleanCellVisitor();
+			}
 
-	@Override
-	public final void timestampColumn(Column column) {
-		visitCell0(column, factory.getTimestampCellVisitor());
-	}
+			@Override
+			public void longColumn(Column column) {
+				result[0] = factory.getLongCellVisitor();
+			}
 
-	protected final void visitCell0(Column column, CellVisitor visitor) {
-		if (log.isTraceEnabled()) {
-			log.trace("{} start", column);
-		}
-		try {
-			visitCell(column, visitor);
-		} catch (Exception e) {
-			String sheetName = visitorValue.getSheet().getSheetName();
-			String ref = record.getCellReference(visitorValue.getColumnBean(column)).formatAsString();
-			throw new RuntimeException(MessageFormat.format("error at {0} cell={1}!{2}. {3}", column, sheetName, ref,
-					e.getMessage()), e);
-		}
-		if (log.isTraceEnabled()) {
-			log.trace("{} end", column);
-		}
+			@Override
+			public void doubleColumn(Column column) {
+				result[0] = factory.getDoubleCellVisitor();
+			}
+
+			@Override
+			public void stringColumn(Column column) {
+				result[0] = factory.getStringCellVisitor();
+			}
+
+			@Override
+			public void timestampColumn(Column column) {
+				result[0] = factory.getTimestampCellVisitor();
+			}
+		});
+		return result[0];
 	}
 
-	protected void visitCell(Column column, CellVisitor visitor) {
-		PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
-		PoiExcelColumnValueType valueType = bean.getValueType();
-		PoiExcelCellAddress cellAddress = bean.getCellAddress();
+	protected PoiExcelColumnExtractor newExtractor(Column column, PoiExcelColumnBean bean, CellVisitor visitor) {
+		final PoiExcelColumnValueType valueType = bean.getValueType();
+		final PoiExcelCellAddress cellAddress = bean.getCellAddress();
 
 		switch (valueType) {
 		case SHEET_NAME:
 			if (cellAddress != null) {
-				Sheet sheet = cellAddress.getSheet(record);
-				visitor.visitSheetName(column, sheet);
-			} else {
-				visitor.visitSheetName(column);
+				return new PoiExcelColumnExtractor(column, bean, visitor) {
+
+					@Override
+					public void extract(PoiExcelRecord record) {
+						visitor.visitSheetName(column, cellAddress.getSheet(record));
+					}
+				};
 			}
-			return;
+			return new PoiExcelColumnExtractor(column, bean, visitor) {
+
+				@Override
+				public void extract(PoiExcelRecord record) {
+					visitor.visitSheetName(column);
+				}
+			};
 		case ROW_NUMBER:
-			int rowIndex;
 			if (cellAddress != null) {
-				rowIndex = cellAddress.getRowIndex();
-			} else {
-				rowIndex = record.getRowIndex(bean);
+				return new PoiExcelColumnExtractor(column, bean, visitor) {
+
+					@Override
+					public void extract(PoiExcelRecord record) {
+						visitor.visitRowNumber(column, cellAddress.getRowIndex() + 1);
+					}
+				};
 			}
-			visitor.visitRowNumber(column, rowIndex + 1);
-			return;
+			return new PoiExcelColumnExtractor(column, bean, visitor) {
+
+				@Override
+				public void extract(PoiExcelRecord record) {
+					visitor.visitRowNumber(column, record.getRowIndex(bean) + 1);
+				}
+			};
 		case COLUMN_NUMBER:
-			int columnIndex;
 			if (cellAddress != null) {
-				columnIndex = cellAddress.getColumnIndex();
-			} else {
-				columnIndex = record.getColumnIndex(bean);
+				return new PoiExcelColumnExtractor(column, bean, visitor) {
+
+					@Override
+					public void extract(PoiExcelRecord record) {
+						visitor.visitColumnNumber(column, cellAddress.getColumnIndex() + 1);
+					}
+				};
 			}
-			visitor.visitColumnNumber(column, columnIndex + 1);
-			return;
+			return new PoiExcelColumnExtractor(column, bean, visitor) {
+
+				@Override
+				public void extract(PoiExcelRecord record) {
+					visitor.visitColumnNumber(column, record.getColumnIndex(bean) + 1);
+				}
+			};
 		case CONSTANT:
-			visitCellConstant(column, bean.getValueTypeSuffix(), visitor);
-			return;
-		default:
-			break;
-		}
+			final String value = bean.getValueTypeSuffix();
+			return new PoiExcelColumnExtractor(column, bean, visitor) {
 
-		// assert valueType.useCell();
-		Cell cell;
-		if (cellAddress != null) {
-			cell = cellAddress.getCell(record);
-		} else {
-			cell = record.getCell(bean);
-		}
-		if (cell == null) {
-			visitCellNull(column);
-			return;
-		}
-		switch (valueType) {
+				@Override
+				public void extract(PoiExcelRecord record) {
+					visitCellConstant(column, value, visitor);
+				}
+			};
 		case CELL_VALUE:
 		case CELL_FORMULA:
-			visitCellValue(bean, cell, visitor);
-			return;
+			final PoiExcelCellValueVisitor valueVisitor = factory.getPoiExcelCellValueVisitor();
+			return new CellExtractor(column, bean, visitor) {
+
+				@Override
+				protected void extract(Cell cell) {
+					valueVisitor.visitCellValue(bean, cell, visitor);
+				}
+			};
 		case CELL_STYLE:
-			visitCellStyle(bean, cell, visitor);
-			return;
+			final PoiExcelCellStyleVisitor styleVisitor = factory.getPoiExcelCellStyleVisitor();
+			return new CellExtractor(column, bean, visitor) {
+
+				@Override
+				protected void extract(Cell cell) {
+					styleVisitor.visit(bean, cell, visitor);
+				}
+			};
 		case CELL_FONT:
-			visitCellFont(bean, cell, visitor);
-			return;
+			final PoiExcelCellFontVisitor fontVisitor = factory.getPoiExcelCellFontVisitor();
+			return new CellExtractor(column, bean, visitor) {
+
+				@Override
+				protected void extract(Cell cell) {
+					fontVisitor.visit(bean, cell, visitor);
+				}
+			};
 		case CELL_COMMENT:
-			visitCellComment(bean, cell, visitor);
-			return;
+			final PoiExcelCellCommentVisitor commentVisitor = factory.getPoiExcelCellCommentVisitor();
+			return new CellExtractor(column, bean, visitor) {
+
+				@Override
+				protected void extract(Cell cell) {
+					commentVisitor.visit(bean, cell, visitor);
+				}
+
+				@Override
+				protected void extractNull(PoiExcelRecord record) {
+					visitCellComment(bean, record, visitor);
+				}
+			};
 		case CELL_TYPE:
-			visitCellType(bean, cell, cell.getCellTypeEnum(), visitor);
-			return;
+			final PoiExcelCellTypeVisitor typeVisitor = factory.getPoiExcelCellTypeVisitor();
+			return new CellExtractor(column, bean, visitor) {
+
+				@Override
+				protected void extract(Cell cell) {
+					typeVisitor.visit(bean, cell, cell.getCellTypeEnum(), visitor);
+				}
+			};
 		case CELL_CACHED_TYPE:
-			if (cell.getCellTypeEnum() == CellType.FORMULA) {
-				visitCellType(bean, cell, cell.getCachedFormulaResultTypeEnum(), visitor);
-			} else {
-				visitCellType(bean, cell, cell.getCellTypeEnum(), visitor);
-			}
-			return;
+			final PoiExcelCellTypeVisitor cachedTypeVisitor = factory.getPoiExcelCellTypeVisitor();
+			return new CellExtractor(column, bean, visitor) {
+
+				@Override
+				protected void extract(Cell cell) {
+					CellType cellType = cell.getCellTypeEnum();
+					if (cellType == CellType.FORMULA) {
+						cellType = cell.getCachedFormulaResultTypeEnum();
+					}
+					cachedTypeVisitor.visit(bean, cell, cellType, visitor);
+				}
+			};
 		default:
 			throw new UnsupportedOperationException(MessageFormat.format("unsupported value_type={0}", valueType));
 		}
 	}
 
+	protected abstract class CellExtractor extends PoiExcelColumnExtractor {
+		private final PoiExcelCellAddress cellAddress;
+
+		public CellExtractor(Column column, PoiExcelColumnBean bean, CellVisitor visitor) {
+			super(column, bean, visitor);
+			this.cellAddress = bean.getCellAddress();
+		}
+
+		@Override
+		public final void extract(PoiExcelRecord record) {
+			Cell cell;
+			if (cellAddress != null) {
+				cell = cellAddress.getCell(record);
+			} else {
+				cell = record.getCell(bean);
+			}
+			if (cell == null) {
+				extractNull(record);
+				return;
+			}
+			extract(cell);
+		}
+
+		protected abstract void extract(Cell cell);
+
+		protected void extractNull(PoiExcelRecord record) {
+			visitCellNull(column);
+		}
+	}
+
+	/**
+	 * set the values of the current record. (same as {@link org.embulk.spi.Schema#visitColumns(ColumnVisitor)})
+	 *
+	 * @param extractors
+	 *            extractors created by {@link #createExtractors(Schema)}
+	 */
+	public final void extract(PoiExcelColumnExtractor[] extractors) {
+		boolean trace = log.isTraceEnabled();
+		for (PoiExcelColumnExtractor extractor : extractors) {
+			Column column = extractor.getColumn();
+			if (trace) {
+				log.trace("{} start", column);
+			}
+			try {
+				extractor.extract(record);
+			} catch (Exception e) {
+				String sheetName = visitorValue.getSheet().getSheetName();
+				String ref = record.getCellReference(extractor.getColumnBean()).formatAsString();
+				throw new RuntimeException(MessageFormat.format("error at {0} cell={1}!{2}. {3}", column, sheetName,
+						ref, e.getMessage()), e);
+			}
+			if (trace) {
+				log.trace("{} end", column);
+			}
+		}
+	}
+
 	protected void visitCellConstant(Column column, String value, CellVisitor visitor) {
 		if (value == null) {
 			pageBuilder.setNull(column);
@@ -168,28 +291,21 @@ public class PoiExcelColumnVisitor implements ColumnVisitor {
 		pageBuilder.setNull(column);
 	}
 
-	private void visitCellValue(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
-		PoiExcelCellValueVisitor delegator = factory.getPoiExcelCellValueVisitor();
-		delegator.visitCellValue(bean, cell, visitor);
-	}
-
-	private void visitCellStyle(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
-		PoiExcelCellStyleVisitor delegator = factory.getPoiExcelCellStyleVisitor();
-		delegator.visit(bean, cell, visitor);
-	}
-
-	private void visitCellFont(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
-		PoiExcelCellFontVisitor delegator = factory.getPoiExcelCellFontVisitor();
-		delegator.visit(bean, cell, visitor);
-	}
-
-	private void visitCellComment(PoiExcelColumnBean bean, Cell cell, CellVisitor visitor) {
+	// the comment can exist without the cell
+	private void visitCellComment(PoiExcelColumnBean bean, PoiExcelRecord record, CellVisitor visitor) {
+		PoiExcelCellAddress cellAddress = bean.getCellAddress();
+		Sheet sheet;
+		int rowIndex, columnIndex;
+		if (cellAddress != null) {
+			sheet = cellAddress.getSheet(record);
+			rowIndex = cellAddress.getRowIndex();
+			columnIndex = cellAddress.getColumnIndex();
+		} else {
+			sheet = record.getSheet();
+			rowIndex = record.getRowIndex(bean);
+			columnIndex = record.getColumnIndex(bean);
+		}
 		PoiExcelCellCommentVisitor delegator = factory.getPoiExcelCellCommentVisitor();
-		delegator.visit(bean, cell, visitor);
-	}
-
-	private void visitCellType(PoiExcelColumnBean bean, Cell cell, CellType cellType, CellVisitor visitor) {
-		PoiExcelCellTypeVisitor delegator = factory.getPoiExcelCellTypeVisitor();
-		delegator.visit(bean, cell, cellType, visitor);
+		delegator.visit(bean, sheet, rowIndex, columnIndex, visitor);
 	}
 }
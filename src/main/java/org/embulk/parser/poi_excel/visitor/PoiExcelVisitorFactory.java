@@ -19,7 +19,7 @@ public class PoiExcelVisitorFactory {
 		return visitorValue;
 	}
 
-	// visitor root (Embulk ColumnVisitor)
+	// visitor root
 	private PoiExcelColumnVisitor poiExcelColumnVisitor;
 
 	public final PoiExcelColumnVisitor getPoiExcelColumnVisitor() {
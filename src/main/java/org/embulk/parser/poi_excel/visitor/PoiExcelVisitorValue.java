@@ -1,5 +1,6 @@
 package org.embulk.parser.poi_excel.visitor;
 
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
@@ -16,10 +17,18 @@ public class PoiExcelVisitorValue {
 	private PoiExcelVisitorFactory factory;
 
 	public PoiExcelVisitorValue(PluginTask task, Schema schema, Sheet sheet, PageBuilder pageBuilder) {
+		this(task, sheet, pageBuilder, new PoiExcelSheetBean(task, schema, sheet));
+	}
+
+	/**
+	 * @param sheetBean
+	 *            sheet bean (shared by the visitors of the sheet)
+	 */
+	public PoiExcelVisitorValue(PluginTask task, Sheet sheet, PageBuilder pageBuilder, PoiExcelSheetBean sheetBean) {
 		this.task = task;
 		this.sheet = sheet;
 		this.pageBuilder = pageBuilder;
-		this.sheetBean = new PoiExcelSheetBean(task, schema, sheet);
+		this.sheetBean = sheetBean;
 	}
 
 	public PluginTask getPluginTask() {
@@ -49,4 +58,33 @@ public class PoiExcelVisitorValue {
 	public PoiExcelColumnBean getColumnBean(Column column) {
 		return sheetBean.getColumnBean(column);
 	}
+
+	private FormulaEvaluator formulaEvaluator;
+
+	/**
+	 * @return evaluator. created when a formula is evaluated first (not supported by reader=streaming)
+	 */
+	public FormulaEvaluator getFormulaEvaluator() {
+		if (formulaEvaluator == null) {
+			this.formulaEvaluator = sheet.getWorkbook().getCreationHelper().createFormulaEvaluator();
+		}
+		return formulaEvaluator;
+	}
+
+	/**
+	 * @return evaluator. null if no formula has been evaluated
+	 */
+	public FormulaEvaluator getCreatedFormulaEvaluator() {
+		return formulaEvaluator;
+	}
+
+	public void setFormulaEvaluator(FormulaEvaluator formulaEvaluator) {
+		this.formulaEvaluator = formulaEvaluator;
+	}
+
+	public void clearFormulaCache() {
+		if (formulaEvaluator != null) {
+			formulaEvaluator.clearAllCachedResultValues();
+		}
+	}
 }
@@ -8,6 +8,7 @@ import org.embulk.config.ConfigException;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean.ErrorStrategy;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.parser.poi_excel.visitor.util.NumericScanner;
 import org.embulk.spi.Column;
 import org.embulk.spi.PageBuilder;
 
@@ -23,6 +24,11 @@ public abstract class CellVisitor {
 
 	public abstract void visitCellValueNumeric(Column column, Object source, double value);
 
+	// numeric value as written in the file (reader=streaming)
+	public void visitCellValueNumericText(Column column, Object source, String text) {
+		visitCellValueNumeric(column, source, ((Cell) source).getNumericCellValue());
+	}
+
 	public abstract void visitCellValueString(Column column, Object source, String value);
 
 	public void visitCellValueBlank(Column column, Object source) {
@@ -48,11 +54,35 @@ public abstract class CellVisitor {
 	public abstract void visitColumnNumber(Column column, int index1);
 
 	protected void doConvertError(Column column, Object srcValue, Throwable t) {
+		if (setConvertErrorValue(column)) {
+			return;
+		}
+
+		throw new RuntimeException(MessageFormat.format("convert error. value={0}", srcValue), t);
+	}
+
+	/**
+	 * convert error of the numeric string. the cause is created only when the error is thrown.
+	 */
+	protected void doConvertError(Column column, String srcValue, NumericScanner scanner) {
+		if (setConvertErrorValue(column)) {
+			return;
+		}
+
+		NumberFormatException cause = new NumberFormatException(MessageFormat.format("{0}. input string=\"{1}\"",
+				scanner.getErrorReason(), srcValue));
+		throw new RuntimeException(MessageFormat.format("convert error. value={0}", srcValue), cause);
+	}
+
+	/**
+	 * @return true if the value is set by on_convert_error. false if the error is thrown
+	 */
+	private boolean setConvertErrorValue(Column column) {
 		PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
 		ErrorStrategy strategy = bean.getConvertErrorStrategy();
 		switch (strategy.getStrategy()) {
 		default:
-			break;
+			return false;
 		case CONSTANT:
 			String value = strategy.getValue();
 			if (value == null) {
@@ -64,11 +94,24 @@ public abstract class CellVisitor {
 					throw new ConfigException(MessageFormat.format("constant value convert error. value={0}", value), e);
 				}
 			}
-			return;
+			return true;
 		}
-
-		throw new RuntimeException(MessageFormat.format("convert error. value={0}", srcValue), t);
 	}
 
 	protected abstract void doConvertErrorConstant(Column column, String value) throws Exception;
+
+	private NumericScanner[] numericScanners;
+
+	protected final NumericScanner getNumericScanner(Column column) {
+		if (numericScanners == null) {
+			numericScanners = new NumericScanner[visitorValue.getPluginTask().getColumns().getColumns().size()];
+		}
+		NumericScanner scanner = numericScanners[column.getIndex()];
+		if (scanner == null) {
+			PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
+			scanner = new NumericScanner(bean.getNumericLenient());
+			numericScanners[column.getIndex()] = scanner;
+		}
+		return scanner;
+	}
 }
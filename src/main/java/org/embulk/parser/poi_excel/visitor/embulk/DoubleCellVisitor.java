@@ -2,6 +2,7 @@ package org.embulk.parser.poi_excel.visitor.embulk;
 
 import org.apache.poi.ss.usermodel.Sheet;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.parser.poi_excel.visitor.util.NumericScanner;
 import org.embulk.spi.Column;
 
 public class DoubleCellVisitor extends CellVisitor {
@@ -17,14 +18,12 @@ public class DoubleCellVisitor extends CellVisitor {
 
 	@Override
 	public void visitCellValueString(Column column, Object source, String value) {
-		double d;
-		try {
-			d = Double.parseDouble(value);
-		} catch (NumberFormatException e) {
-			doConvertError(column, value, e);
+		NumericScanner scanner = getNumericScanner(column);
+		if (!scanner.scanDouble(value)) {
+			doConvertError(column, value, scanner);
 			return;
 		}
-		pageBuilder.setDouble(column, d);
+		pageBuilder.setDouble(column, scanner.getDouble());
 	}
 
 	@Override
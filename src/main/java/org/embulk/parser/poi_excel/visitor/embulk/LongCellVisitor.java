@@ -1,11 +1,16 @@
 package org.embulk.parser.poi_excel.visitor.embulk;
 
 import org.apache.poi.ss.usermodel.Sheet;
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.parser.poi_excel.visitor.util.NumericScanner;
 import org.embulk.spi.Column;
 
 public class LongCellVisitor extends CellVisitor {
 
+	// the integer in this range is exact in double
+	private static final int EXACT_INTEGER_DIGITS = 15;
+
 	public LongCellVisitor(PoiExcelVisitorValue visitorValue) {
 		super(visitorValue);
 	}
@@ -15,16 +20,28 @@ public class LongCellVisitor extends CellVisitor {
 		pageBuilder.setLong(column, (long) value);
 	}
 
+	@Override
+	public void visitCellValueNumericText(Column column, Object source, String text) {
+		PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
+		int maxDigits = bean.getNumericRawText() ? Integer.MAX_VALUE : EXACT_INTEGER_DIGITS;
+		if (NumericScanner.isPlainInteger(text, maxDigits)) {
+			NumericScanner scanner = getNumericScanner(column);
+			if (scanner.scanLong(text)) {
+				pageBuilder.setLong(column, scanner.getLong());
+				return;
+			}
+		}
+		super.visitCellValueNumericText(column, source, text);
+	}
+
 	@Override
 	public void visitCellValueString(Column column, Object source, String value) {
-		long l;
-		try {
-			l = Long.parseLong(value);
-		} catch (NumberFormatException e) {
-			doConvertError(column, value, e);
+		NumericScanner scanner = getNumericScanner(column);
+		if (!scanner.scanLong(value)) {
+			doConvertError(column, value, scanner);
 			return;
 		}
-		pageBuilder.setLong(column, l);
+		pageBuilder.setLong(column, scanner.getLong());
 	}
 
 	@Override
@@ -7,10 +7,15 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellReference;
 import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.parser.poi_excel.visitor.util.NumericFormatter;
+import org.embulk.parser.poi_excel.visitor.util.NumericScanner;
 import org.embulk.spi.Column;
 
 public class StringCellVisitor extends CellVisitor {
 
+	// Double.toString() returns the same digits for the integer in this range
+	private static final int PLAIN_INTEGER_DIGITS = 7;
+
 	public StringCellVisitor(PoiExcelVisitorValue visitorValue) {
 		super(visitorValue);
 	}
@@ -21,27 +26,32 @@ public class StringCellVisitor extends CellVisitor {
 		pageBuilder.setString(column, s);
 	}
 
-	protected String toString(Column column, Object source, double value) {
-		String format = getNumericFormat(column);
-		if (!format.isEmpty()) {
-			try {
-				return String.format(format, value);
-			} catch (Exception e) {
-				throw new IllegalArgumentException(MessageFormat.format(
-						"illegal String.format for double. numeric_format=\"{0}\"", format), e);
+	@Override
+	public void visitCellValueNumericText(Column column, Object source, String text) {
+		NumericFormatter formatter = getNumericFormatter(column);
+		if (formatter.getFormat().isEmpty()) {
+			PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
+			if (bean.getNumericRawText() || NumericScanner.isPlainInteger(text, PLAIN_INTEGER_DIGITS)) {
+				pageBuilder.setString(column, text);
+				return;
 			}
 		}
+		super.visitCellValueNumericText(column, source, text);
+	}
 
-		String s = Double.toString(value);
-		if (s.endsWith(".0")) {
-			return s.substring(0, s.length() - 2);
+	protected String toString(Column column, Object source, double value) {
+		NumericFormatter formatter = getNumericFormatter(column);
+		try {
+			return formatter.format(value);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"illegal String.format for double. numeric_format=\"{0}\"", formatter.getFormat()), e);
 		}
-		return s;
 	}
 
-	protected String getNumericFormat(Column column) {
+	protected NumericFormatter getNumericFormatter(Column column) {
 		PoiExcelColumnBean bean = visitorValue.getColumnBean(column);
-		return bean.getNumericFormat();
+		return bean.getNumericFormatter();
 	}
 
 	@Override
@@ -1,16 +1,16 @@
 package org.embulk.parser.poi_excel.visitor.embulk;
 
-import java.util.Date;
-import java.util.TimeZone;
-
-import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.embulk.parser.poi_excel.PoiExcelParserPlugin.PluginTask;
 import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.parser.poi_excel.visitor.util.ExcelDateConverter;
+import org.embulk.parser.poi_excel.visitor.util.FastTimestampParser;
 import org.embulk.spi.Column;
+import org.embulk.spi.ColumnConfig;
 import org.embulk.spi.time.Timestamp;
 import org.embulk.spi.time.TimestampParseException;
 import org.embulk.spi.time.TimestampParser;
+import org.embulk.spi.time.TimestampParser.TimestampColumnOption;
 import org.embulk.spi.util.Timestamps;
 
 public class TimestampCellVisitor extends CellVisitor {
@@ -21,19 +21,21 @@ public class TimestampCellVisitor extends CellVisitor {
 
 	@Override
 	public void visitCellValueNumeric(Column column, Object source, double value) {
-		TimestampParser parser = getTimestampParser(column);
-		TimeZone tz = parser.getDefaultTimeZone().toTimeZone();
-		Date date = DateUtil.getJavaDate(value, tz);
-		Timestamp t = Timestamp.ofEpochMilli(date.getTime());
-		pageBuilder.setTimestamp(column, t);
+		long millis;
+		try {
+			millis = getDateConverter(column).toEpochMilli(value);
+		} catch (IllegalArgumentException e) {
+			doConvertError(column, value, e);
+			return;
+		}
+		pageBuilder.setTimestamp(column, Timestamp.ofEpochMilli(millis));
 	}
 
 	@Override
 	public void visitCellValueString(Column column, Object source, String value) {
 		Timestamp t;
 		try {
-			TimestampParser parser = getTimestampParser(column);
-			t = parser.parse(value);
+			t = getFastTimestampParser(column).parse(value);
 		} catch (TimestampParseException e) {
 			doConvertError(column, value, e);
 			return;
@@ -84,8 +86,7 @@ public class TimestampCellVisitor extends CellVisitor {
 
 	@Override
 	protected void doConvertErrorConstant(Column column, String value) throws Exception {
-		TimestampParser parser = getTimestampParser(column);
-		pageBuilder.setTimestamp(column, parser.parse(value));
+		pageBuilder.setTimestamp(column, getFastTimestampParser(column).parse(value));
 	}
 
 	private TimestampParser[] timestampParsers;
@@ -97,4 +98,39 @@ public class TimestampCellVisitor extends CellVisitor {
 		}
 		return timestampParsers[column.getIndex()];
 	}
+
+	private FastTimestampParser[] fastParsers;
+
+	protected final FastTimestampParser getFastTimestampParser(Column column) {
+		TimestampParser parser = getTimestampParser(column);
+		if (fastParsers == null) {
+			fastParsers = new FastTimestampParser[timestampParsers.length];
+		}
+		FastTimestampParser fastParser = fastParsers[column.getIndex()];
+		if (fastParser == null) {
+			PluginTask task = visitorValue.getPluginTask();
+			ColumnConfig config = task.getColumns().getColumns().get(column.getIndex());
+			TimestampColumnOption option = config.getOption().loadConfig(TimestampColumnOption.class);
+			String format = option.getFormat().or(task.getDefaultTimestampFormat());
+			fastParser = new FastTimestampParser(parser, format);
+			fastParsers[column.getIndex()] = fastParser;
+		}
+		return fastParser;
+	}
+
+	private ExcelDateConverter[] dateConverters;
+
+	protected final ExcelDateConverter getDateConverter(Column column) {
+		TimestampParser parser = getTimestampParser(column);
+		if (dateConverters == null) {
+			dateConverters = new ExcelDateConverter[timestampParsers.length];
+		}
+		ExcelDateConverter converter = dateConverters[column.getIndex()];
+		if (converter == null) {
+			boolean date1904 = ExcelDateConverter.isDate1904(visitorValue.getSheet().getWorkbook());
+			converter = new ExcelDateConverter(parser.getDefaultTimeZone(), date1904);
+			dateConverters[column.getIndex()] = converter;
+		}
+		return converter;
+	}
 }
@@ -0,0 +1,120 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import java.text.MessageFormat;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.embulk.parser.poi_excel.reader.stream.StreamingWorkbook;
+import org.joda.time.DateTimeZone;
+
+/**
+ * converter from Excel serial date to epoch milliseconds. (same result as DateUtil.getJavaDate(double, boolean,
+ * TimeZone) without Calendar)
+ */
+public class ExcelDateConverter {
+
+	private static final long DAY_MILLISECONDS = 24L * 60 * 60 * 1000;
+
+	// epoch day of 1900-01-01 and 1904-01-01
+	private static final long EPOCH_DAY_1900 = -25567;
+	private static final long EPOCH_DAY_1904 = -24107;
+
+	private final DateTimeZone zone;
+	private final boolean date1904;
+
+	// the local time in [cacheStart, cacheEnd) has the same offset
+	private long cacheStart = Long.MAX_VALUE;
+	private long cacheEnd = Long.MIN_VALUE;
+	private int cacheOffset;
+
+	public ExcelDateConverter(DateTimeZone zone, boolean date1904) {
+		this.zone = zone;
+		this.date1904 = date1904;
+	}
+
+	public static boolean isDate1904(Workbook workbook) {
+		if (workbook instanceof StreamingWorkbook) {
+			return ((StreamingWorkbook) workbook).isDate1904();
+		}
+		if (workbook instanceof XSSFWorkbook) {
+			return ((XSSFWorkbook) workbook).isDate1904();
+		}
+		if (workbook instanceof HSSFWorkbook) {
+			return ((HSSFWorkbook) workbook).getInternalWorkbook().isUsing1904DateWindowing();
+		}
+		return false;
+	}
+
+	/**
+	 * @param value
+	 *            Excel serial date
+	 * @return epoch milliseconds
+	 * @throws IllegalArgumentException
+	 *             if value is not valid Excel date
+	 */
+	public long toEpochMilli(double value) {
+		if (!(value > -Double.MIN_VALUE)) {
+			throw new IllegalArgumentException(MessageFormat.format("invalid Excel date. value={0}", value));
+		}
+
+		int wholeDays = (int) Math.floor(value);
+		int millisecondsInDay = (int) ((value - wholeDays) * DAY_MILLISECONDS + 0.5);
+
+		long epochDay;
+		if (date1904) {
+			epochDay = EPOCH_DAY_1904 + wholeDays;
+		} else if (wholeDays < 61) {
+			epochDay = EPOCH_DAY_1900 + wholeDays - 1;
+		} else {
+			// Excel thinks 1900-02-29 is valid
+			epochDay = EPOCH_DAY_1900 + wholeDays - 2;
+		}
+		long localMillis = epochDay * DAY_MILLISECONDS + millisecondsInDay;
+		return localMillis - getOffsetFromLocal(localMillis);
+	}
+
+	/**
+	 * @return offset of the local time. in the overlap, the later offset is used. in the gap, the earlier offset is
+	 *         used. (same as GregorianCalendar)
+	 */
+	private int getOffsetFromLocal(long localMillis) {
+		if (cacheStart <= localMillis && localMillis < cacheEnd) {
+			return cacheOffset;
+		}
+
+		// the offset of the period [transition(i), transition(i+1)) is used in the local time
+		// [transition(i) + offset(i), transition(i+1) + offset(i+1))
+		long instant = localMillis - zone.getOffset(localMillis);
+		for (;;) {
+			int offset = zone.getOffset(instant);
+
+			long start;
+			long prev = zone.previousTransition(instant + 1);
+			if (prev == instant + 1) {
+				start = Long.MIN_VALUE;
+			} else {
+				start = prev + offset;
+			}
+
+			long end;
+			long next = zone.nextTransition(instant);
+			if (next == instant) {
+				end = Long.MAX_VALUE;
+			} else {
+				end = next + zone.getOffset(next);
+			}
+
+			if (localMillis < start) {
+				instant = prev - 1;
+			} else if (localMillis >= end) {
+				instant = next;
+			} else {
+				this.cacheStart = start;
+				this.cacheEnd = end;
+				this.cacheOffset = offset;
+				return offset;
+			}
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.time.TimestampParseException;
+import org.embulk.spi.time.TimestampParser;
+import org.joda.time.DateTimeZone;
+
+/**
+ * timestamp parser with the cache of parsed values (and of the texts which cannot be parsed). the simple format (%Y,
+ * %m, %d, %H, %M, %S, %z, %F, %T) is parsed without TimestampParser.
+ */
+public class FastTimestampParser {
+
+	private static final int CACHE_SIZE = 1024;
+
+	private static final int LITERAL = 0;
+	private static final int SPACE = 1;
+	private static final int YEAR = 2;
+	private static final int MONTH = 3;
+	private static final int DAY = 4;
+	private static final int HOUR = 5;
+	private static final int MINUTE = 6;
+	private static final int SECOND = 7;
+	private static final int ZONE = 8;
+
+	private final TimestampParser parser;
+	private final DateTimeZone defaultZone;
+
+	// null if the format is not supported by the native parser
+	private final int[] tokens;
+	private final char[] literals;
+
+	// value: Timestamp, or TimestampParseException if the text cannot be parsed
+	private final Map<String, Object> cache;
+
+	public FastTimestampParser(TimestampParser parser, String format) {
+		this.parser = parser;
+		this.defaultZone = parser.getDefaultTimeZone();
+
+		List<Integer> tokenList = compile(format);
+		if (tokenList != null) {
+			this.tokens = new int[tokenList.size()];
+			this.literals = new char[tokenList.size()];
+			for (int i = 0; i < tokens.length; i++) {
+				int token = tokenList.get(i);
+				tokens[i] = token & 0xffff;
+				literals[i] = (char) (token >>> 16);
+			}
+		} else {
+			this.tokens = null;
+			this.literals = null;
+		}
+
+		this.cache = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * @return tokens (literal character is in the upper 16 bits). null if not supported
+	 */
+	private static List<Integer> compile(String format) {
+		if (format == null) {
+			return null;
+		}
+		List<Integer> list = new ArrayList<>();
+		boolean year = false, month = false, day = false;
+		for (int i = 0; i < format.length(); i++) {
+			char c = format.charAt(i);
+			if (c != '%') {
+				if (Character.isWhitespace(c)) {
+					list.add(SPACE);
+				} else {
+					list.add(LITERAL | (c << 16));
+				}
+				continue;
+			}
+			if (++i >= format.length()) {
+				return null;
+			}
+			switch (format.charAt(i)) {
+			case 'Y':
+				list.add(YEAR);
+				year = true;
+				break;
+			case 'm':
+				list.add(MONTH);
+				month = true;
+				break;
+			case 'd':
+				list.add(DAY);
+				day = true;
+				break;
+			case 'H':
+				list.add(HOUR);
+				break;
+			case 'M':
+				list.add(MINUTE);
+				break;
+			case 'S':
+				list.add(SECOND);
+				break;
+			case 'z':
+				list.add(ZONE);
+				break;
+			case 'F':
+				list.add(YEAR);
+				list.add(LITERAL | ('-' << 16));
+				list.add(MONTH);
+				list.add(LITERAL | ('-' << 16));
+				list.add(DAY);
+				year = month = day = true;
+				break;
+			case 'T':
+				list.add(HOUR);
+				list.add(LITERAL | (':' << 16));
+				list.add(MINUTE);
+				list.add(LITERAL | (':' << 16));
+				list.add(SECOND);
+				break;
+			case '%':
+				list.add(LITERAL | ('%' << 16));
+				break;
+			default:
+				return null;
+			}
+		}
+		if (!(year && month && day)) {
+			return null;
+		}
+		return list;
+	}
+
+	public Timestamp parse(String text) throws TimestampParseException {
+		Object value = cache.get(text);
+		if (value == null) {
+			value = parseNative(text);
+			if (value == null) {
+				try {
+					value = parser.parse(text);
+				} catch (TimestampParseException e) {
+					value = e;
+				}
+			}
+			cache.put(text, value);
+		}
+		if (value instanceof TimestampParseException) {
+			// the same text (such as "N/A") fails again without TimestampParser
+			throw (TimestampParseException) value;
+		}
+		return (Timestamp) value;
+	}
+
+	/**
+	 * @return null if the text is not parsed (TimestampParser is used)
+	 */
+	private Timestamp parseNative(String text) {
+		if (tokens == null) {
+			return null;
+		}
+
+		int year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0;
+		boolean hasOffset = false;
+		int offsetSeconds = 0;
+
+		int length = text.length();
+		int pos = 0;
+		for (int i = 0; i < tokens.length; i++) {
+			int token = tokens[i];
+			switch (token) {
+			case LITERAL:
+				if (pos >= length || text.charAt(pos) != literals[i]) {
+					return null;
+				}
+				pos++;
+				break;
+			case SPACE:
+				while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+					pos++;
+				}
+				break;
+			case YEAR:
+				year = readDigits(text, pos, 4, 4);
+				if (year < 0) {
+					return null;
+				}
+				pos += 4;
+				// strptime reads all digits of the year unless the next is numeric
+				if (!isNumericToken(i + 1) && pos < length && isDigit(text.charAt(pos))) {
+					return null;
+				}
+				break;
+			case ZONE:
+				if (pos >= length) {
+					return null;
+				}
+				char sign = text.charAt(pos);
+				if (sign != '+' && sign != '-') {
+					return null;
+				}
+				int h = readDigits(text, pos + 1, 2, 2);
+				if (h < 0) {
+					return null;
+				}
+				pos += 3;
+				if (pos < length && text.charAt(pos) == ':') {
+					pos++;
+				}
+				int m = readDigits(text, pos, 2, 2);
+				if (m < 0 || h > 23 || m > 59) {
+					return null;
+				}
+				pos += 2;
+				hasOffset = true;
+				offsetSeconds = (h * 60 + m) * 60;
+				if (sign == '-') {
+					offsetSeconds = -offsetSeconds;
+				}
+				break;
+			default:
+				int n = (pos + 1 < length && isDigit(text.charAt(pos + 1))) ? 2 : 1;
+				int value = readDigits(text, pos, n, n);
+				if (value < 0) {
+					return null;
+				}
+				pos += n;
+				switch (token) {
+				case MONTH:
+					month = value;
+					break;
+				case DAY:
+					day = value;
+					break;
+				case HOUR:
+					hour = value;
+					break;
+				case MINUTE:
+					minute = value;
+					break;
+				case SECOND:
+					second = value;
+					break;
+				default:
+					throw new AssertionError(token);
+				}
+				break;
+			}
+		}
+		if (pos != length) {
+			return null;
+		}
+		if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour > 23 || minute > 59
+				|| second > 59) {
+			return null;
+		}
+
+		long localSeconds = toEpochDay(year, month, day) * 86400 + (hour * 60 + minute) * 60 + second;
+		long epochSecond;
+		if (hasOffset) {
+			epochSecond = localSeconds - offsetSeconds;
+		} else {
+			// same as TimestampParser
+			epochSecond = defaultZone.convertLocalToUTC(localSeconds * 1000, false) / 1000;
+		}
+		return Timestamp.ofEpochSecond(epochSecond);
+	}
+
+	private boolean isNumericToken(int i) {
+		if (i >= tokens.length) {
+			return false;
+		}
+		int token = tokens[i];
+		return token != LITERAL && token != SPACE && token != ZONE;
+	}
+
+	private static boolean isDigit(char c) {
+		return '0' <= c && c <= '9';
+	}
+
+	/**
+	 * @return value. -1 if not digits
+	 */
+	private static int readDigits(String text, int pos, int min, int max) {
+		int value = 0;
+		int n = 0;
+		for (; n < max && pos + n < text.length(); n++) {
+			char c = text.charAt(pos + n);
+			if (!isDigit(c)) {
+				break;
+			}
+			value = value * 10 + (c - '0');
+		}
+		if (n < min) {
+			return -1;
+		}
+		return value;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+			return leap ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	// days from civil (proleptic Gregorian)
+	private static long toEpochDay(int year, int month, int day) {
+		long y = (month <= 2) ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yoe = y - era * 400;
+		long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+}
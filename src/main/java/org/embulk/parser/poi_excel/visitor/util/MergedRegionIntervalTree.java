@@ -0,0 +1,141 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+public class MergedRegionIntervalTree implements MergedRegionFinder {
+
+	private final Map<Sheet, RegionIndex> sheetMap = new ConcurrentHashMap<>();
+
+	@Override
+	public CellRangeAddress get(Sheet sheet, int rowIndex, int columnIndex) {
+		RegionIndex index = sheetMap.get(sheet);
+		if (index == null) {
+			synchronized (this) {
+				index = sheetMap.get(sheet);
+				if (index == null) {
+					index = new RegionIndex(sheet.getMergedRegions());
+					sheetMap.put(sheet, index);
+				}
+			}
+		}
+
+		return index.get(rowIndex, columnIndex);
+	}
+
+	/**
+	 * implicit interval tree over the regions sorted by first row and first column. each subtree keeps the bounds of
+	 * its rows and columns, so the regions stacked over the same rows are pruned by column.
+	 */
+	protected static class RegionIndex {
+		private final CellRangeAddress[] regions;
+		private final int[] firstRow;
+		private final int[] lastRow;
+		private final int[] firstColumn;
+		private final int[] lastColumn;
+		/** max lastRow in the subtree whose root is the index */
+		private final int[] maxLastRow;
+		/** min firstColumn in the subtree whose root is the index */
+		private final int[] minFirstColumn;
+		/** max lastColumn in the subtree whose root is the index */
+		private final int[] maxLastColumn;
+
+		public RegionIndex(List<CellRangeAddress> list) {
+			this.regions = list.toArray(new CellRangeAddress[list.size()]);
+			Arrays.sort(regions, new Comparator<CellRangeAddress>() {
+
+				@Override
+				public int compare(CellRangeAddress o1, CellRangeAddress o2) {
+					int c = Integer.compare(o1.getFirstRow(), o2.getFirstRow());
+					if (c != 0) {
+						return c;
+					}
+					return Integer.compare(o1.getFirstColumn(), o2.getFirstColumn());
+				}
+			});
+
+			int size = regions.length;
+			this.firstRow = new int[size];
+			this.lastRow = new int[size];
+			this.firstColumn = new int[size];
+			this.lastColumn = new int[size];
+			this.maxLastRow = new int[size];
+			this.minFirstColumn = new int[size];
+			this.maxLastColumn = new int[size];
+			for (int i = 0; i < size; i++) {
+				CellRangeAddress region = regions[i];
+				firstRow[i] = region.getFirstRow();
+				lastRow[i] = region.getLastRow();
+				firstColumn[i] = region.getFirstColumn();
+				lastColumn[i] = region.getLastColumn();
+			}
+			build(0, size);
+		}
+
+		private void build(int from, int to) {
+			if (from >= to) {
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			build(from, mid);
+			build(mid + 1, to);
+
+			int maxRow = lastRow[mid];
+			int minColumn = firstColumn[mid];
+			int maxColumn = lastColumn[mid];
+			int left = (from + mid) >>> 1;
+			if (from < mid) {
+				maxRow = Math.max(maxRow, maxLastRow[left]);
+				minColumn = Math.min(minColumn, minFirstColumn[left]);
+				maxColumn = Math.max(maxColumn, maxLastColumn[left]);
+			}
+			int right = (mid + 1 + to) >>> 1;
+			if (mid + 1 < to) {
+				maxRow = Math.max(maxRow, maxLastRow[right]);
+				minColumn = Math.min(minColumn, minFirstColumn[right]);
+				maxColumn = Math.max(maxColumn, maxLastColumn[right]);
+			}
+			maxLastRow[mid] = maxRow;
+			minFirstColumn[mid] = minColumn;
+			maxLastColumn[mid] = maxColumn;
+		}
+
+		public CellRangeAddress get(int rowIndex, int columnIndex) {
+			return find(0, regions.length, rowIndex, columnIndex);
+		}
+
+		private CellRangeAddress find(int from, int to, int rowIndex, int columnIndex) {
+			while (from < to) {
+				int mid = (from + to) >>> 1;
+				if (maxLastRow[mid] < rowIndex) {
+					return null;
+				}
+				if (columnIndex < minFirstColumn[mid] || maxLastColumn[mid] < columnIndex) {
+					return null;
+				}
+
+				CellRangeAddress found = find(from, mid, rowIndex, columnIndex);
+				if (found != null) {
+					return found;
+				}
+
+				if (firstRow[mid] > rowIndex) {
+					// the right subtree starts below rowIndex
+					return null;
+				}
+				if (rowIndex <= lastRow[mid] && firstColumn[mid] <= columnIndex && columnIndex <= lastColumn[mid]) {
+					return regions[mid];
+				}
+
+				from = mid + 1;
+			}
+			return null;
+		}
+	}
+}
@@ -14,9 +14,12 @@ public abstract class MergedRegionMap implements MergedRegionFinder {
 	public CellRangeAddress get(Sheet sheet, int rowIndex, int columnIndex) {
 		Map<Integer, Map<Integer, CellRangeAddress>> rowMap = sheetMap.get(sheet);
 		if (rowMap == null) {
-			synchronized (sheet) {
-				rowMap = createRowMap(sheet);
-				sheetMap.put(sheet, rowMap);
+			synchronized (this) {
+				rowMap = sheetMap.get(sheet);
+				if (rowMap == null) {
+					rowMap = createRowMap(sheet);
+					sheetMap.put(sheet, rowMap);
+				}
 			}
 		}
 
@@ -0,0 +1,141 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * merged region finder for the rows which are read in ascending order (record_type=row).
+ */
+public class MergedRegionSweepLine {
+
+	public static class ActiveRegion {
+		private final Sheet sheet;
+		private final CellRangeAddress region;
+		private boolean resolved = false;
+		private Cell firstCell;
+
+		ActiveRegion(Sheet sheet, CellRangeAddress region) {
+			this.sheet = sheet;
+			this.region = region;
+		}
+
+		public CellRangeAddress getRegion() {
+			return region;
+		}
+
+		/**
+		 * @return top-left cell of the region (null if not exists)
+		 */
+		public Cell getFirstCell() {
+			if (!resolved) {
+				Row row = sheet.getRow(region.getFirstRow());
+				if (row != null) {
+					this.firstCell = row.getCell(region.getFirstColumn());
+				}
+				this.resolved = true;
+			}
+			return firstCell;
+		}
+	}
+
+	private static final Comparator<CellRangeAddress> FIRST_ROW_ORDER = new Comparator<CellRangeAddress>() {
+
+		@Override
+		public int compare(CellRangeAddress o1, CellRangeAddress o2) {
+			return Integer.compare(o1.getFirstRow(), o2.getFirstRow());
+		}
+	};
+
+	private static final Comparator<ActiveRegion> LAST_ROW_ORDER = new Comparator<ActiveRegion>() {
+
+		@Override
+		public int compare(ActiveRegion o1, ActiveRegion o2) {
+			return Integer.compare(o1.region.getLastRow(), o2.region.getLastRow());
+		}
+	};
+
+	private final Sheet sheet;
+	private final CellRangeAddress[] regions;
+	private int nextIndex;
+	private final PriorityQueue<ActiveRegion> activeQueue = new PriorityQueue<>(16, LAST_ROW_ORDER);
+	private final ActiveRegion[] activeColumns;
+	private int currentRowIndex;
+
+	public MergedRegionSweepLine(Sheet sheet) {
+		this.sheet = sheet;
+
+		List<CellRangeAddress> list = sheet.getMergedRegions();
+		this.regions = list.toArray(new CellRangeAddress[list.size()]);
+		Arrays.sort(regions, FIRST_ROW_ORDER);
+
+		int maxColumn = -1;
+		for (CellRangeAddress region : regions) {
+			maxColumn = Math.max(maxColumn, region.getLastColumn());
+		}
+		this.activeColumns = new ActiveRegion[maxColumn + 1];
+
+		reset();
+	}
+
+	private void reset() {
+		this.nextIndex = 0;
+		activeQueue.clear();
+		Arrays.fill(activeColumns, null);
+		this.currentRowIndex = -1;
+	}
+
+	/**
+	 * @param rowIndex
+	 *            row index (ascending order)
+	 * @param columnIndex
+	 *            column index
+	 * @return merged region which contains the cell (null if not merged)
+	 */
+	public ActiveRegion get(int rowIndex, int columnIndex) {
+		if (rowIndex != currentRowIndex) {
+			moveTo(rowIndex);
+		}
+
+		if (columnIndex >= activeColumns.length) {
+			return null;
+		}
+		return activeColumns[columnIndex];
+	}
+
+	private void moveTo(int rowIndex) {
+		if (rowIndex < currentRowIndex) {
+			reset();
+		}
+		this.currentRowIndex = rowIndex;
+
+		while (!activeQueue.isEmpty() && activeQueue.peek().region.getLastRow() < rowIndex) {
+			ActiveRegion active = activeQueue.poll();
+			fill(active.region, active, null);
+		}
+
+		while (nextIndex < regions.length && regions[nextIndex].getFirstRow() <= rowIndex) {
+			CellRangeAddress region = regions[nextIndex++];
+			if (region.getLastRow() < rowIndex) {
+				continue;
+			}
+			ActiveRegion active = new ActiveRegion(sheet, region);
+			activeQueue.add(active);
+			fill(region, null, active);
+		}
+	}
+
+	private void fill(CellRangeAddress region, ActiveRegion expected, ActiveRegion value) {
+		for (int c = region.getFirstColumn(); c <= region.getLastColumn(); c++) {
+			if (activeColumns[c] == expected) {
+				activeColumns[c] = value;
+			}
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * double to string formatter for numeric_format.
+ * <p>
+ * the format is compiled once. the simple format (such as "%.2f", "%8.3f", "value=%+.1f") is formatted without
+ * java.util.Formatter, and the result is same as String.format().
+ * </p>
+ */
+public class NumericFormatter {
+
+	private static final int DEFAULT_PRECISION = 6;
+
+	// Double.toString() uses the plain notation in this range
+	private static final double PLAIN_MAX = 1e7;
+
+	private final String format;
+	private final Locale locale;
+
+	// compiled "prefix %[flags][width][.precision]f suffix". null if not supported
+	private final String prefix;
+	private final String suffix;
+	private final boolean leftJustify;
+	private final boolean zeroPad;
+	private final char plusSign; // '+', ' ' or 0
+	private final int width;
+	private final int precision;
+
+	private final StringBuilder buffer = new StringBuilder(32);
+	private final StringBuilder digits = new StringBuilder(32);
+	private Formatter formatter;
+
+	public NumericFormatter(String format) {
+		this.format = format;
+		this.locale = Locale.getDefault(Locale.Category.FORMAT);
+
+		Spec spec = format.isEmpty() ? null : compile(format, locale);
+		if (spec != null) {
+			this.prefix = spec.prefix.toString();
+			this.suffix = spec.suffix.toString();
+			this.leftJustify = spec.leftJustify;
+			this.zeroPad = spec.zeroPad;
+			this.plusSign = spec.plusSign;
+			this.width = spec.width;
+			this.precision = spec.precision;
+		} else {
+			this.prefix = null;
+			this.suffix = null;
+			this.leftJustify = false;
+			this.zeroPad = false;
+			this.plusSign = 0;
+			this.width = -1;
+			this.precision = -1;
+		}
+	}
+
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * format double.
+	 *
+	 * @param value
+	 *            value
+	 * @return String.format(format, value) or Double.toString(value) without ".0" if format is empty
+	 */
+	public String format(double value) {
+		if (format.isEmpty()) {
+			return toString(value);
+		}
+		if (prefix != null && !Double.isNaN(value) && !Double.isInfinite(value)) {
+			return formatFixed(value);
+		}
+
+		buffer.setLength(0);
+		if (formatter == null) {
+			formatter = new Formatter(buffer, locale);
+		}
+		formatter.format(format, value);
+		return buffer.toString();
+	}
+
+	protected String toString(double value) {
+		// integral fast path
+		if (-PLAIN_MAX < value && value < PLAIN_MAX) {
+			long l = (long) value;
+			if (l == value) {
+				if (l == 0 && Double.doubleToRawLongBits(value) != 0) {
+					return "-0";
+				}
+				return Long.toString(l);
+			}
+		}
+
+		StringBuilder sb = buffer;
+		sb.setLength(0);
+		sb.append(value); // same digits as Double.toString()
+		int len = sb.length();
+		if (len >= 2 && sb.charAt(len - 2) == '.' && sb.charAt(len - 1) == '0') {
+			sb.setLength(len - 2);
+		}
+		return sb.toString();
+	}
+
+	private String formatFixed(double value) {
+		boolean negative = Double.doubleToRawLongBits(value) < 0;
+
+		// decimal digits and exponent of Double.toString()
+		StringBuilder d = digits;
+		d.setLength(0);
+		d.append(Math.abs(value));
+		int exponent = 0;
+		int e = d.indexOf("E");
+		if (e >= 0) {
+			exponent = Integer.parseInt(d.substring(e + 1));
+			d.setLength(e);
+		}
+		int point = d.indexOf(".");
+		d.deleteCharAt(point);
+		// value = 0.(d) * 10^decExp
+		int decExp = point + exponent;
+		int lead = 0;
+		while (lead < d.length() - 1 && d.charAt(lead) == '0') {
+			lead++;
+		}
+		if (d.charAt(lead) == '0') {
+			d.setLength(0);
+			decExp = 0;
+		} else {
+			d.delete(0, lead);
+			decExp -= lead;
+		}
+
+		// round half up at the precision
+		int keep = decExp + precision;
+		if (keep < d.length()) {
+			boolean up = keep >= 0 && d.charAt(keep) >= '5';
+			d.setLength(Math.max(keep, 0));
+			if (up) {
+				int i = d.length() - 1;
+				for (; i >= 0; i--) {
+					char c = d.charAt(i);
+					if (c != '9') {
+						d.setCharAt(i, (char) (c + 1));
+						break;
+					}
+					d.setCharAt(i, '0');
+				}
+				if (i < 0) {
+					d.insert(0, '1');
+					decExp++;
+				}
+			}
+		}
+
+		StringBuilder sb = buffer;
+		sb.setLength(0);
+		sb.append(prefix);
+		int start = sb.length();
+		if (negative) {
+			sb.append('-');
+		} else if (plusSign != 0) {
+			sb.append(plusSign);
+		}
+		int signEnd = sb.length();
+
+		if (decExp <= 0) {
+			sb.append('0');
+		} else {
+			for (int i = 0; i < decExp; i++) {
+				sb.append(i < d.length() ? d.charAt(i) : '0');
+			}
+		}
+		if (precision > 0) {
+			sb.append('.');
+			for (int i = 0; i < precision; i++) {
+				int n = decExp + i;
+				sb.append(0 <= n && n < d.length() ? d.charAt(n) : '0');
+			}
+		}
+
+		int pad = width - (sb.length() - start);
+		if (pad > 0) {
+			if (leftJustify) {
+				for (int i = 0; i < pad; i++) {
+					sb.append(' ');
+				}
+			} else {
+				int at = zeroPad ? signEnd : start;
+				char c = zeroPad ? '0' : ' ';
+				for (int i = 0; i < pad; i++) {
+					sb.insert(at, c);
+				}
+			}
+		}
+
+		sb.append(suffix);
+		return sb.toString();
+	}
+
+	private static class Spec {
+		StringBuilder prefix = new StringBuilder();
+		StringBuilder suffix = new StringBuilder();
+		boolean leftJustify;
+		boolean zeroPad;
+		char plusSign;
+		int width = -1;
+		int precision = DEFAULT_PRECISION;
+	}
+
+	// returns null if the format is formatted by java.util.Formatter
+	private static Spec compile(String format, Locale locale) {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		if (symbols.getZeroDigit() != '0' || symbols.getDecimalSeparator() != '.') {
+			return null;
+		}
+
+		Spec spec = new Spec();
+		boolean found = false;
+		int len = format.length();
+		for (int i = 0; i < len; i++) {
+			char c = format.charAt(i);
+			StringBuilder literal = found ? spec.suffix : spec.prefix;
+			if (c != '%') {
+				literal.append(c);
+				continue;
+			}
+			if (++i >= len) {
+				return null;
+			}
+			c = format.charAt(i);
+			if (c == '%') {
+				literal.append('%');
+				continue;
+			}
+			if (c == 'n') {
+				literal.append(System.lineSeparator());
+				continue;
+			}
+			if (found) {
+				return null;
+			}
+
+			// flags
+			for (; i < len; i++) {
+				c = format.charAt(i);
+				if (c == '-' && !spec.leftJustify) {
+					spec.leftJustify = true;
+				} else if (c == '0' && !spec.zeroPad) {
+					spec.zeroPad = true;
+				} else if ((c == '+' || c == ' ') && spec.plusSign == 0) {
+					spec.plusSign = c;
+				} else {
+					break;
+				}
+			}
+			// width
+			int w = 0;
+			int n = 0;
+			for (; i < len && '0' <= (c = format.charAt(i)) && c <= '9'; i++) {
+				if (++n > 6) {
+					return null;
+				}
+				w = w * 10 + (c - '0');
+			}
+			if (n > 0) {
+				if (w == 0) {
+					return null;
+				}
+				spec.width = w;
+			}
+			// precision
+			if (i < len && format.charAt(i) == '.') {
+				i++;
+				int p = 0;
+				n = 0;
+				for (; i < len && '0' <= (c = format.charAt(i)) && c <= '9'; i++) {
+					if (++n > 3) {
+						return null;
+					}
+					p = p * 10 + (c - '0');
+				}
+				if (n == 0) {
+					return null;
+				}
+				spec.precision = p;
+			}
+			if (i >= len || format.charAt(i) != 'f') {
+				return null;
+			}
+			if (spec.leftJustify && spec.zeroPad) {
+				return null;
+			}
+			if ((spec.leftJustify || spec.zeroPad) && spec.width < 0) {
+				return null;
+			}
+			found = true;
+		}
+		if (!found) {
+			return null;
+		}
+		return spec;
+	}
+}
@@ -0,0 +1,404 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+/**
+ * numeric string scanner which reports a failure without throwing NumberFormatException.
+ * <p>
+ * the strict mode accepts the same strings as Long.parseLong() and Double.parseDouble(). the lenient mode also accepts
+ * full-width characters and thousands separators (such as "\uff11\uff0c\uff12\uff13\uff14").
+ * </p>
+ */
+public class NumericScanner {
+
+	// 10^0 .. 10^22 are exactly representable in double
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static final int MAX_FAST_DIGITS = 15;
+
+	private final boolean lenient;
+
+	// the reason of the failure (used for the error message)
+	private static final String EMPTY = "empty";
+	private static final String NOT_A_NUMBER = "not a number";
+	private static final String OUT_OF_LONG_RANGE = "out of long range";
+	private static final String ILLEGAL_SEPARATOR = "illegal thousands separator";
+
+	private long longValue;
+	private double doubleValue;
+	private String errorReason;
+
+	// normalized string for the lenient mode
+	private char[] buffer = new char[32];
+	private int length;
+
+	public NumericScanner(boolean lenient) {
+		this.lenient = lenient;
+	}
+
+	public boolean isLenient() {
+		return lenient;
+	}
+
+	/**
+	 * scan long value.
+	 *
+	 * @param s
+	 *            string
+	 * @return true if s is a long value. the value is returned by {@link #getLong()}
+	 */
+	public boolean scanLong(String s) {
+		int end = s.length();
+		int i = 0;
+		if (lenient) {
+			while (i < end && isSpace(s.charAt(i))) {
+				i++;
+			}
+			while (end > i && isSpace(s.charAt(end - 1))) {
+				end--;
+			}
+		}
+		if (i >= end) {
+			return fail(EMPTY);
+		}
+
+		boolean negative = false;
+		char c = normalizeSign(s.charAt(i));
+		if (c == '-' || c == '+') {
+			negative = (c == '-');
+			i++;
+			if (i >= end) {
+				return fail(NOT_A_NUMBER);
+			}
+		}
+
+		// accumulate negatively like Long.parseLong()
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multmin = limit / 10;
+		long result = 0;
+		int group = 0;
+		boolean separated = false;
+		for (; i < end; i++) {
+			c = s.charAt(i);
+			int digit = Character.digit(c, 10);
+			if (digit < 0) {
+				if (lenient && isSeparator(c) && validSeparator(group, separated)) {
+					separated = true;
+					group = 0;
+					continue;
+				}
+				return fail(lenient && isSeparator(c) ? ILLEGAL_SEPARATOR : NOT_A_NUMBER);
+			}
+			if (result < multmin) {
+				return fail(OUT_OF_LONG_RANGE);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return fail(OUT_OF_LONG_RANGE);
+			}
+			result -= digit;
+			group++;
+		}
+		if (group == 0) {
+			return fail(NOT_A_NUMBER);
+		}
+		if (separated && group != 3) {
+			return fail(ILLEGAL_SEPARATOR);
+		}
+
+		this.longValue = negative ? result : -result;
+		return true;
+	}
+
+	public long getLong() {
+		return longValue;
+	}
+
+	/**
+	 * check the integer text such as "123", "-45".
+	 *
+	 * @param s
+	 *            string
+	 * @param maxDigits
+	 *            max number of digits
+	 * @return true if s is ASCII digits with an optional '-' and without leading zeros
+	 */
+	public static boolean isPlainInteger(String s, int maxDigits) {
+		int len = s.length();
+		int i = (len > 0 && s.charAt(0) == '-') ? 1 : 0;
+		int digits = len - i;
+		if (digits <= 0 || digits > maxDigits) {
+			return false;
+		}
+		if (s.charAt(i) == '0' && digits > 1) {
+			return false;
+		}
+		for (; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || '9' < c) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * scan double value.
+	 *
+	 * @param s
+	 *            string
+	 * @return true if s is a double value. the value is returned by {@link #getDouble()}
+	 */
+	public boolean scanDouble(String s) {
+		int end = s.length();
+		int i = 0;
+		while (i < end && isSpace(s.charAt(i))) {
+			i++;
+		}
+		while (end > i && isSpace(s.charAt(end - 1))) {
+			end--;
+		}
+		if (i >= end) {
+			return fail(EMPTY);
+		}
+		length = 0;
+
+		boolean negative = false;
+		char c = normalizeSign(s.charAt(i));
+		if (c == '-' || c == '+') {
+			negative = (c == '-');
+			append(c);
+			i++;
+			if (i >= end) {
+				return fail(NOT_A_NUMBER);
+			}
+		}
+
+		if (s.startsWith("NaN", i) && i + 3 == end) {
+			this.doubleValue = Double.NaN;
+			return true;
+		}
+		if (s.startsWith("Infinity", i) && i + 8 == end) {
+			this.doubleValue = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			return true;
+		}
+		if (s.startsWith("0x", i) || s.startsWith("0X", i)) {
+			// hexadecimal floating-point literal
+			return parseDouble(s);
+		}
+
+		long mantissa = 0;
+		int digits = 0; // significant digits
+		int intDigits = 0;
+		int fracDigits = 0;
+		int scale = 0; // number of fraction digits accumulated in mantissa
+		int group = 0;
+		boolean separated = false;
+
+		// integer part
+		for (; i < end; i++) {
+			c = s.charAt(i);
+			int digit = digit(c);
+			if (digit < 0) {
+				if (lenient && isSeparator(c) && validSeparator(group, separated)) {
+					separated = true;
+					group = 0;
+					continue;
+				}
+				break;
+			}
+			append((char) ('0' + digit));
+			intDigits++;
+			group++;
+			if (digits < MAX_FAST_DIGITS) {
+				mantissa = mantissa * 10 + digit;
+				if (mantissa != 0) {
+					digits++;
+				}
+			} else {
+				digits++;
+			}
+		}
+		if (separated && group != 3) {
+			return fail(ILLEGAL_SEPARATOR);
+		}
+
+		// fraction part
+		if (i < end && normalizePoint(s.charAt(i)) == '.') {
+			append('.');
+			i++;
+			for (; i < end; i++) {
+				int digit = digit(s.charAt(i));
+				if (digit < 0) {
+					break;
+				}
+				append((char) ('0' + digit));
+				fracDigits++;
+				if (digits < MAX_FAST_DIGITS) {
+					mantissa = mantissa * 10 + digit;
+					scale++;
+					if (mantissa != 0) {
+						digits++;
+					}
+				} else {
+					digits++;
+				}
+			}
+		}
+		if (intDigits == 0 && fracDigits == 0) {
+			return fail(NOT_A_NUMBER);
+		}
+
+		// exponent part
+		int exponent = 0;
+		if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			append('e');
+			i++;
+			boolean expNegative = false;
+			if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+				expNegative = (s.charAt(i) == '-');
+				append(s.charAt(i));
+				i++;
+			}
+			int expDigits = 0;
+			for (; i < end; i++) {
+				int digit = digit(s.charAt(i));
+				if (digit < 0) {
+					break;
+				}
+				append((char) ('0' + digit));
+				expDigits++;
+				if (exponent < 100000) {
+					exponent = exponent * 10 + digit;
+				}
+			}
+			if (expDigits == 0) {
+				return fail(NOT_A_NUMBER);
+			}
+			if (expNegative) {
+				exponent = -exponent;
+			}
+		}
+
+		// type suffix
+		if (i < end) {
+			c = s.charAt(i);
+			if (c == 'f' || c == 'F' || c == 'd' || c == 'D') {
+				i++;
+			}
+		}
+		if (i != end) {
+			return fail(NOT_A_NUMBER);
+		}
+
+		if (digits <= MAX_FAST_DIGITS) {
+			// both mantissa and 10^n are exact, so the result is correctly rounded
+			int e = exponent - scale;
+			double d = mantissa;
+			if (e == 0) {
+				this.doubleValue = negative ? -d : d;
+				return true;
+			}
+			if (0 < e && e < POWERS_OF_TEN.length) {
+				d *= POWERS_OF_TEN[e];
+				this.doubleValue = negative ? -d : d;
+				return true;
+			}
+			if (0 > e && -e < POWERS_OF_TEN.length) {
+				d /= POWERS_OF_TEN[-e];
+				this.doubleValue = negative ? -d : d;
+				return true;
+			}
+		}
+		// validated, so Double.parseDouble() does not throw
+		if (lenient) {
+			this.doubleValue = Double.parseDouble(new String(buffer, 0, length));
+			return true;
+		}
+		return parseDouble(s);
+	}
+
+	public double getDouble() {
+		return doubleValue;
+	}
+
+	/**
+	 * @return the reason why the last scan failed
+	 */
+	public String getErrorReason() {
+		return errorReason;
+	}
+
+	private boolean fail(String reason) {
+		this.errorReason = reason;
+		return false;
+	}
+
+	private boolean parseDouble(String s) {
+		try {
+			this.doubleValue = Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			return fail(NOT_A_NUMBER);
+		}
+		return true;
+	}
+
+	private void append(char c) {
+		if (length >= buffer.length) {
+			char[] b = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, b, 0, length);
+			this.buffer = b;
+		}
+		buffer[length++] = c;
+	}
+
+	private int digit(char c) {
+		if ('0' <= c && c <= '9') {
+			return c - '0';
+		}
+		if (lenient) {
+			return Character.digit(c, 10);
+		}
+		return -1;
+	}
+
+	private boolean isSpace(char c) {
+		// same as String.trim()
+		return c <= ' ' || (lenient && c == '\u3000');
+	}
+
+	private char normalizeSign(char c) {
+		if (lenient) {
+			switch (c) {
+			case '\uff0b': // FULLWIDTH PLUS SIGN
+				return '+';
+			case '\uff0d': // FULLWIDTH HYPHEN-MINUS
+			case '\u2212': // MINUS SIGN
+				return '-';
+			default:
+				break;
+			}
+		}
+		return c;
+	}
+
+	private char normalizePoint(char c) {
+		if (lenient && c == '\uff0e') { // FULLWIDTH FULL STOP
+			return '.';
+		}
+		return c;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == ',' || c == '\uff0c'; // FULLWIDTH COMMA
+	}
+
+	private static boolean validSeparator(int group, boolean separated) {
+		if (group == 0) {
+			return false;
+		}
+		if (separated) {
+			return group == 3;
+		}
+		return group <= 3;
+	}
+}
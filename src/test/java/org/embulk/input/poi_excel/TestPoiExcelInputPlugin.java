@@ -0,0 +1,118 @@
+package org.embulk.input.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.embulk.config.ConfigSource;
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.spi.InputPlugin;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelInputPlugin {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@DataPoints
+	public static String[] READERS = { "usermodel", "streaming" };
+
+	@Theory
+	public void testRowsPerTask(String excelFile, String reader) throws URISyntaxException {
+		List<String> expected = Arrays.asList("true,123,abc", "false,456,def", "false,123,456", "true,123,abc",
+				"true,123,abc", "true,1,true", "null,null,null");
+
+		for (Integer rowsPerTask : Arrays.asList(null, 1, 3, 100)) {
+			List<OutputRecord> result = run(excelFile, reader, rowsPerTask);
+
+			assertThat(result.size(), is(7));
+			List<String> list = new ArrayList<>();
+			for (OutputRecord r : result) {
+				list.add(r.getAsBoolean("boolean") + "," + r.getAsLong("long") + "," + r.getAsString("string"));
+			}
+			// tasks may be run in any order
+			List<String> sorted = new ArrayList<>(expected);
+			Collections.sort(list);
+			Collections.sort(sorted);
+			assertThat(list, is(sorted));
+		}
+	}
+
+	@Theory
+	public void testRowsPerTask_mergedCell(String excelFile, String reader) throws URISyntaxException {
+		// the first rows of the merged regions are before the range of the task
+		List<String> expected = Arrays.asList("test3-a1,test3-a1,null,null", "data,0,null,null", "null,null,data,data",
+				"null,null,data,data");
+
+		for (Integer rowsPerTask : Arrays.asList(null, 1, 3)) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				EmbulkTestParserConfig config = newConfig(tester, excelFile, reader, rowsPerTask);
+				config.set("sheet", "merged_cell");
+				config.addColumn("a", "string").set("column_number", "A");
+				config.addColumn("b", "string").set("column_number", "B");
+				config.addColumn("d", "string").set("column_number", "D");
+				config.addColumn("e", "string").set("column_number", "E");
+				List<OutputRecord> result = run(tester, config);
+
+				List<String> list = new ArrayList<>();
+				for (OutputRecord r : result) {
+					list.add(r.getAsString("a") + "," + r.getAsString("b") + "," + r.getAsString("d") + ","
+							+ r.getAsString("e"));
+				}
+				// tasks may be run in any order
+				List<String> sorted = new ArrayList<>(expected);
+				Collections.sort(list);
+				Collections.sort(sorted);
+				assertThat(list, is(sorted));
+			}
+		}
+	}
+
+	private List<OutputRecord> run(String excelFile, String reader, Integer rowsPerTask) throws URISyntaxException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			EmbulkTestParserConfig config = newConfig(tester, excelFile, reader, rowsPerTask);
+			config.set("sheet", "test1");
+			config.set("skip_header_lines", 1);
+			config.addColumn("boolean", "boolean");
+			config.addColumn("long", "long");
+			config.addColumn("double", "double");
+			config.addColumn("string", "string");
+			return run(tester, config);
+		}
+	}
+
+	private EmbulkTestParserConfig newConfig(EmbulkPluginTester tester, String excelFile, String reader,
+			Integer rowsPerTask) throws URISyntaxException {
+		tester.addPlugin(InputPlugin.class, PoiExcelInputPlugin.TYPE, PoiExcelInputPlugin.class);
+
+		URL inFile = getClass().getResource("/org/embulk/parser/poi_excel/" + excelFile);
+
+		EmbulkTestParserConfig config = tester.newParserConfig(PoiExcelInputPlugin.TYPE);
+		config.set("paths", Arrays.asList(new File(inFile.toURI()).getAbsolutePath()));
+		config.set("rows_per_task", rowsPerTask);
+		config.set("reader", reader);
+		return config;
+	}
+
+	private List<OutputRecord> run(EmbulkPluginTester tester, EmbulkTestParserConfig config) {
+		ConfigSource in = tester.newConfigSource();
+		for (Map.Entry<String, Object> entry : config.entrySet()) {
+			in.set(entry.getKey(), entry.getValue());
+		}
+		return tester.runInput(in);
+	}
+}
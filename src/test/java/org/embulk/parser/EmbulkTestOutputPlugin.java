@@ -31,6 +31,7 @@ public class EmbulkTestOutputPlugin implements OutputPlugin {
 
 	public static class OutputRecord {
 		private Map<String, Object> map = new LinkedHashMap<>();
+		private int pageIndex;
 
 		public void set(String name, Object value) {
 			map.put(name, value);
@@ -76,6 +77,17 @@ public class EmbulkTestOutputPlugin implements OutputPlugin {
 			}
 		}
 
+		void setPageIndex(int pageIndex) {
+			this.pageIndex = pageIndex;
+		}
+
+		/**
+		 * @return index of the page in the task (0 origin)
+		 */
+		public int getPageIndex() {
+			return pageIndex;
+		}
+
 		@Override
 		public String toString() {
 			return map.toString();
@@ -104,12 +116,14 @@ public class EmbulkTestOutputPlugin implements OutputPlugin {
 	public TransactionalPageOutput open(TaskSource taskSource, final Schema schema, int taskIndex) {
 		return new TransactionalPageOutput() {
 			private final PageReader reader = new PageReader(schema);
+			private int pageIndex = 0;
 
 			@Override
 			public void add(Page page) {
 				reader.setPage(page);
 				while (reader.nextRecord()) {
 					final OutputRecord record = new OutputRecord();
+					record.setPageIndex(pageIndex);
 					for (Column column : schema.getColumns()) {
 						column.visit(new ColumnVisitor() {
 
@@ -161,6 +175,7 @@ public class EmbulkTestOutputPlugin implements OutputPlugin {
 					}
 					result.add(record);
 				}
+				pageIndex++;
 			}
 
 			@Override
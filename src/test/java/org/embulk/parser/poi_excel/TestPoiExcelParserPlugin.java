@@ -93,6 +93,39 @@ public class TestPoiExcelParserPlugin {
 		}
 	}
 
+	@Theory
+	public void testNumricFormat_flags(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("sheets", Arrays.asList("test1"));
+			parser.set("skip_header_lines", 1);
+			parser.addColumn("zero", "string").set("column_number", "C").set("numeric_format", "%08.3f");
+			parser.addColumn("left", "string").set("column_number", "C").set("numeric_format", "[%-7.1f]");
+			parser.addColumn("exp", "string").set("column_number", "C").set("numeric_format", "%.2e");
+			parser.addColumn("default", "string").set("column_number", "C");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(7));
+			checkNumricFormat(result, 0, "0123.400", "[123.4  ]", "1.23e+02", "123.4");
+			checkNumricFormat(result, 1, "0456.700", "[456.7  ]", "4.57e+02", "456.7");
+			checkNumricFormat(result, 2, "0123.000", "[123.0  ]", "1.23e+02", "123");
+		}
+	}
+
+	private void checkNumricFormat(List<OutputRecord> result, int index, String zero, String left, String exp,
+			String s) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsString("zero"), is(zero));
+		assertThat(r.getAsString("left"), is(left));
+		assertThat(r.getAsString("exp"), is(exp));
+		assertThat(r.getAsString("default"), is(s));
+	}
+
 	private void checkNumricFormat(List<OutputRecord> result, int index, String s) {
 		OutputRecord r = result.get(index);
 		// System.out.println(r);
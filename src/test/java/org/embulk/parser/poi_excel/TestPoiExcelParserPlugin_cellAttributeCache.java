@@ -0,0 +1,150 @@
+package org.embulk.parser.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.parser.poi_excel.bean.PoiExcelColumnBean;
+import org.embulk.parser.poi_excel.visitor.PoiExcelCellFontVisitor;
+import org.embulk.parser.poi_excel.visitor.PoiExcelCellStyleVisitor;
+import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorFactory;
+import org.embulk.parser.poi_excel.visitor.PoiExcelVisitorValue;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelParserPlugin_cellAttributeCache {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@Theory
+	public void testCache(String excelFile) {
+		List<OutputRecord> expected = run(excelFile, NoCacheParserPlugin.TYPE, NoCacheParserPlugin.class);
+		int expectedCount = CountParserPlugin.COUNT.get();
+		List<OutputRecord> result = run(excelFile, CountParserPlugin.TYPE, CountParserPlugin.class);
+		int resultCount = CountParserPlugin.COUNT.get();
+
+		assertThat(result.size(), is(8 + 5));
+		for (int i = 0; i < result.size(); i++) {
+			assertThat(result.get(i).toString(), is(expected.get(i).toString()));
+		}
+
+		// the cells of the same style index are got from the cache
+		assertThat(resultCount < expectedCount, is(true));
+		// m/d/yy (the same style index as the previous row)
+		OutputRecord r = result.get(2);
+		assertThat(r.getAsString("format-e"), is("m/d/yy"));
+		assertThat(r.getAsString("font-color-c"), is(nullValue()));
+		assertThat(r.getAsString("font-c").contains("\"color\":null"), is(true));
+	}
+
+	private List<OutputRecord> run(String excelFile, String type, Class<? extends PoiExcelParserPlugin> pluginClass) {
+		CountParserPlugin.COUNT.set(0);
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(type, pluginClass);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(type);
+			parser.set("sheets", Arrays.asList("test1", "style"));
+			parser.addColumn("color-a", "string").set("column_number", "A")
+					.set("value", "cell_style.fill_foreground_color");
+			parser.addColumn("border-color-a", "string").set("column_number", "A")
+					.set("value", "cell_style.border_top_color");
+			parser.addColumn("format-e", "string").set("column_number", "E").set("value", "cell_style.data_format");
+			parser.addColumn("style-b", "string").set("column_number", "B").set("value", "cell_style");
+			parser.addColumn("border-b", "string").set("column_number", "B").set("value", "cell_style")
+					.set("attribute_name", Arrays.asList("border_top", "border_top_color"));
+			parser.addColumn("font-color-c", "string").set("column_number", "C").set("value", "cell_font.color");
+			parser.addColumn("bold-d", "boolean").set("column_number", "D").set("value", "cell_font.bold");
+			parser.addColumn("font-c", "string").set("column_number", "C").set("value", "cell_font");
+
+			URL inFile = getClass().getResource(excelFile);
+			return tester.runParser(inFile, parser);
+		}
+	}
+
+	/**
+	 * count the attribute sources got by cell_style and cell_font.
+	 */
+	public static class CountParserPlugin extends PoiExcelParserPlugin {
+
+		public static final String TYPE = "poi_excel_count";
+
+		static final AtomicInteger COUNT = new AtomicInteger();
+
+		protected boolean useCache() {
+			return true;
+		}
+
+		@Override
+		protected PoiExcelVisitorFactory newPoiExcelVisitorFactory(PluginTask task, Schema schema, Sheet sheet,
+				PageBuilder pageBuilder) {
+			PoiExcelVisitorValue visitorValue = new PoiExcelVisitorValue(task, schema, sheet, pageBuilder);
+			return new PoiExcelVisitorFactory(visitorValue) {
+
+				@Override
+				protected PoiExcelCellStyleVisitor newPoiExcelCellStyleVisitor() {
+					return new PoiExcelCellStyleVisitor(visitorValue) {
+
+						@Override
+						protected CellStyle getAttributeSource(PoiExcelColumnBean bean, Cell cell) {
+							COUNT.incrementAndGet();
+							return super.getAttributeSource(bean, cell);
+						}
+
+						@Override
+						protected int getCacheIndex(Cell cell) {
+							return useCache() ? super.getCacheIndex(cell) : -1;
+						}
+					};
+				}
+
+				@Override
+				protected PoiExcelCellFontVisitor newPoiExcelCellFontVisitor() {
+					return new PoiExcelCellFontVisitor(visitorValue) {
+
+						@Override
+						protected Font getAttributeSource(PoiExcelColumnBean bean, Cell cell) {
+							COUNT.incrementAndGet();
+							return super.getAttributeSource(bean, cell);
+						}
+
+						@Override
+						protected int getCacheIndex(Cell cell) {
+							return useCache() ? super.getCacheIndex(cell) : -1;
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/**
+	 * compute cell_style and cell_font without the cache.
+	 */
+	public static class NoCacheParserPlugin extends CountParserPlugin {
+
+		public static final String TYPE = "poi_excel_no_cache";
+
+		@Override
+		protected boolean useCache() {
+			return false;
+		}
+	}
+}
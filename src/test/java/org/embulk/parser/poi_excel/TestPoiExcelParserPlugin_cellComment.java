@@ -103,4 +103,28 @@ public class TestPoiExcelParserPlugin_cellComment {
 			check2(result, 1, null, null);
 		}
 	}
+
+	@Theory
+	public void testComment_streaming(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("sheet", "comment");
+			parser.addColumn("author", "string").set("value", "cell_comment.author");
+			parser.addColumn("comment", "string").set("value", "cell_comment.string");
+			parser.addColumn("row1", "long").set("value", "cell_comment.client_anchor.row1");
+			parser.addColumn("row2", "long").set("value", "cell_comment.client_anchor.row2");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(2));
+			check1(result, 0, "hishidama", "hishidama:\nmy comment");
+			check1(result, 1, null, null);
+			assertThat(result.get(0).getAsLong("row1"), is(0L));
+			assertThat(result.get(0).getAsLong("row2"), is(4L));
+		}
+	}
 }
@@ -7,11 +7,14 @@ import static org.junit.Assert.fail;
 
 import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.List;
 
+import org.embulk.config.ConfigSource;
 import org.embulk.parser.EmbulkPluginTester;
 import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
 import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.parser.EmbulkTestParserConfig.EmbulkTestColumn;
 import org.embulk.spi.time.Timestamp;
 import org.junit.experimental.theories.DataPoints;
 import org.junit.experimental.theories.Theories;
@@ -71,6 +74,43 @@ public class TestPoiExcelParserPlugin_convertError {
 		}
 	}
 
+	@Theory
+	public void testConvertError_numeric(String excelFile) throws Exception {
+		checkNumericError(excelFile, "long", null, "red", "not a number. input string=\"red\"");
+		checkNumericError(excelFile, "double", null, "red", "not a number. input string=\"red\"");
+		checkNumericError(excelFile, "long", "constant.99999999999999999999", "99999999999999999999",
+				"out of long range. input string=\"99999999999999999999\"");
+		checkNumericError(excelFile, "long", "constant.1,234", "1,234", "not a number. input string=\"1,234\"");
+	}
+
+	private void checkNumericError(String excelFile, String type, String value, String srcValue, String reason) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("sheet", "style");
+			EmbulkTestColumn column = parser.addColumn("n", type).set("column_number", "A");
+			if (value != null) {
+				column.set("value", value);
+			}
+
+			URL inFile = getClass().getResource(excelFile);
+			try {
+				tester.runParser(inFile, parser);
+			} catch (Exception e) {
+				Throwable c1 = e.getCause();
+				assertThat(c1.getMessage().contains("error at Column"), is(true));
+				Throwable c2 = c1.getCause();
+				assertThat(c2.getMessage(), is("convert error. value=" + srcValue));
+				Throwable c3 = c2.getCause();
+				assertThat(c3 instanceof NumberFormatException, is(true));
+				assertThat(c3.getMessage(), is(reason));
+				return; // success
+			}
+			fail("must throw Exception");
+		}
+	}
+
 	@Theory
 	public void testConvertError_null(String excelFile) throws Exception {
 		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
@@ -117,4 +157,35 @@ public class TestPoiExcelParserPlugin_convertError {
 			}
 		}
 	}
+
+	@Theory
+	public void testConvertError_negativeDate(String excelFile) throws Exception {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("sheet", "formula_replace");
+
+			// A1 is a negative number (not valid as Excel date)
+			ConfigSource replace = tester.newConfigSource();
+			replace.set("regex", "^test1!A1$");
+			replace.set("to", "-1.5");
+			parser.set("formula_replace", Arrays.asList(replace));
+
+			parser.set("on_convert_error", "constant");
+			parser.addColumn("d", "double").set("column_number", "A");
+			parser.addColumn("t", "timestamp").set("column_number", "A").set("format", "%Y/%m/%d")
+					.set("on_convert_error", "constant.2000/1/1");
+			parser.addColumn("n", "timestamp").set("column_number", "A");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			OutputRecord r = result.get(0);
+			assertThat(r.getAsDouble("d"), is(-1.5));
+			assertThat(r.getAsTimestamp("t"), is(Timestamp.ofEpochMilli(new SimpleDateFormat("yyyy/MM/dd z").parse(
+					"2000/01/01 UTC").getTime())));
+			assertThat(r.getAsTimestamp("n"), is(nullValue()));
+		}
+	}
 }
@@ -0,0 +1,69 @@
+package org.embulk.parser.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.text.ParseException;
+import java.util.List;
+
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelParserPlugin_emptyRows {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@Theory
+	public void testSkipEmptyRows(String excelFile) throws ParseException {
+		List<OutputRecord> result = run(excelFile, true, null);
+
+		assertThat(result.size(), is(2));
+		check(result, 0, "test3-a1", "test3-a1");
+		check(result, 1, "data", "0");
+	}
+
+	@Theory
+	public void testStopOnEmptyRows(String excelFile) throws ParseException {
+		List<OutputRecord> result = run(excelFile, null, 2);
+
+		assertThat(result.size(), is(3));
+		check(result, 0, "test3-a1", "test3-a1");
+		check(result, 1, "data", "0");
+		check(result, 2, null, null);
+	}
+
+	private List<OutputRecord> run(String excelFile, Boolean skipEmptyRows, Integer stopOnEmptyRows) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("sheet", "merged_cell");
+			if (skipEmptyRows != null) {
+				parser.set("skip_empty_rows", skipEmptyRows);
+			}
+			if (stopOnEmptyRows != null) {
+				parser.set("stop_on_empty_rows", stopOnEmptyRows);
+			}
+			parser.addColumn("a", "string");
+			parser.addColumn("b", "string");
+
+			URL inFile = getClass().getResource(excelFile);
+			return tester.runParser(inFile, parser);
+		}
+	}
+
+	private void check(List<OutputRecord> result, int index, String a, String b) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsString("a"), is(a));
+		assertThat(r.getAsString("b"), is(b));
+	}
+}
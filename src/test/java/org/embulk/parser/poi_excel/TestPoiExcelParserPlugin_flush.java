@@ -0,0 +1,119 @@
+package org.embulk.parser.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelParserPlugin_flush {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@Theory
+	public void testFlushCount(String excelFile) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			EmbulkTestParserConfig parser = newParserConfig(tester, "test1");
+			parser.set("skip_header_lines", 1);
+			parser.set("flush_count", 3);
+
+			List<OutputRecord> result = tester.runParser(getClass().getResource(excelFile), parser);
+
+			assertThat(getPageIndexes(result), is(Arrays.asList(0, 0, 0, 1, 1, 1, 2)));
+		}
+	}
+
+	@Theory
+	public void testFlushCount_default(String excelFile) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			EmbulkTestParserConfig parser = newParserConfig(tester, "test1");
+			parser.set("skip_header_lines", 1);
+
+			List<OutputRecord> result = tester.runParser(getClass().getResource(excelFile), parser);
+
+			// the page is emitted when it is full
+			assertThat(getPageIndexes(result), is(Arrays.asList(0, 0, 0, 0, 0, 0, 0)));
+		}
+	}
+
+	@Theory
+	public void testFlushInterval(String excelFile) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			EmbulkTestParserConfig parser = newParserConfig(tester, "test1");
+			parser.set("skip_header_lines", 1);
+			parser.set("flush_interval", 60 * 60 * 1000);
+
+			List<OutputRecord> result = tester.runParser(getClass().getResource(excelFile), parser);
+
+			// not flushed within the interval
+			assertThat(getPageIndexes(result), is(Arrays.asList(0, 0, 0, 0, 0, 0, 0)));
+		}
+
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			EmbulkTestParserConfig parser = newParserConfig(tester, "test1");
+			parser.set("skip_header_lines", 1);
+			parser.set("flush_interval", 1);
+
+			List<OutputRecord> result = tester.runParser(getClass().getResource(excelFile), parser);
+
+			// the number of the pages depends on the time. the records are not lost or reordered
+			assertThat(result.size(), is(7));
+			for (int i = 0; i < result.size(); i++) {
+				OutputRecord r = result.get(i);
+				assertThat(r.getAsLong("row"), is((long) i + 2));
+				if (i > 0) {
+					assertThat(r.getPageIndex() >= result.get(i - 1).getPageIndex(), is(true));
+				}
+			}
+		}
+	}
+
+	@Theory
+	public void testFlushOnSheet(String excelFile) {
+		for (boolean flushOnSheet : Arrays.asList(false, true)) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				EmbulkTestParserConfig parser = newParserConfig(tester, null);
+				parser.set("sheets", Arrays.asList("test1", "style"));
+				parser.set("flush_on_sheet", flushOnSheet);
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(8 + 5));
+				for (OutputRecord r : result) {
+					int expected = (flushOnSheet && r.getAsString("sheet").equals("style")) ? 1 : 0;
+					assertThat(r.toString(), r.getPageIndex(), is(expected));
+				}
+			}
+		}
+	}
+
+	private EmbulkTestParserConfig newParserConfig(EmbulkPluginTester tester, String sheetName) {
+		tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+		EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+		parser.set("sheet", sheetName);
+		parser.addColumn("sheet", "string").set("value", "sheet_name");
+		parser.addColumn("row", "long").set("value", "row_number");
+		return parser;
+	}
+
+	private static List<Integer> getPageIndexes(List<OutputRecord> result) {
+		Integer[] indexes = new Integer[result.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = result.get(i).getPageIndex();
+		}
+		return Arrays.asList(indexes);
+	}
+}
@@ -87,4 +87,59 @@ public class TestPoiExcelParserPlugin_formula {
 			assertThat(result.get(1).getAsString("text"), is("test2-b2"));
 		}
 	}
+
+	@Theory
+	public void testForumlaReplace_cacheClear(String excelFile) throws ParseException {
+		for (String cacheClear : Arrays.asList("sheet", "never", "1")) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("sheet", "formula_replace");
+				parser.set("formula_cache_clear", cacheClear);
+
+				ConfigSource replace0 = tester.newConfigSource();
+				replace0.set("regex", "test1");
+				replace0.set("to", "merged_cell");
+				ConfigSource replace1 = tester.newConfigSource();
+				replace1.set("regex", "B1");
+				replace1.set("to", "B${row}");
+				parser.set("formula_replace", Arrays.asList(replace0, replace1));
+
+				parser.addColumn("text", "string");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(2));
+				assertThat(result.get(0).getAsString("text"), is("test3-a1"));
+				assertThat(result.get(1).getAsString("text"), is("test2-b2"));
+			}
+		}
+	}
+
+	@Theory
+	public void testStreaming_cacheClearNever(String excelFile) throws ParseException {
+		for (int parallelSheets : new int[] { 1, 2 }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", "streaming");
+				parser.set("sheets", Arrays.asList("formula_replace", "merged_cell"));
+				parser.set("formula_cache_clear", "never");
+				parser.set("parallel_sheets", parallelSheets);
+
+				parser.addColumn("text", "string");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(6));
+				assertThat(result.get(0).getAsString("text"), is("boolean"));
+				assertThat(result.get(1).getAsString("text"), is("test2-b1"));
+				assertThat(result.get(2).getAsString("text"), is("test3-a1"));
+			}
+		}
+	}
 }
@@ -58,6 +58,76 @@ public class TestPoiExcelParserPlugin_mergedCell {
 		test(excelFile, "hash_search", true);
 	}
 
+	@Theory
+	public void testSearchMergedCell_intervalTree(String excelFile) throws ParseException {
+		test(excelFile, "interval_tree", true);
+	}
+
+	@Theory
+	public void testSearchMergedCell_sweepLine(String excelFile) throws ParseException {
+		test(excelFile, "sweep_line", true);
+	}
+
+	@Theory
+	public void testSearchMergedCell_sweepLine_skipHeaderLines(String excelFile) throws ParseException {
+		for (String reader : new String[] { "usermodel", "streaming" }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", reader);
+				parser.set("sheet", "merged_cell");
+				parser.set("search_merged_cell", "sweep_line");
+				// the region D3:E4 starts above the first row which is read
+				parser.set("skip_header_lines", 3);
+				parser.addColumn("d", "string").set("column_number", "D");
+				parser.addColumn("e", "string").set("column_number", "E");
+				parser.addColumn("g", "string").set("column_number", "G");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(1));
+				OutputRecord r = result.get(0);
+				assertThat(r.getAsString("d"), is("data"));
+				assertThat(r.getAsString("e"), is("data"));
+				assertThat(r.getAsString("g"), is((String) null));
+			}
+		}
+	}
+
+	@Theory
+	public void testSearchMergedCell_sweepLine_rows(String excelFile) throws ParseException {
+		for (String reader : new String[] { "usermodel", "streaming" }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", reader);
+				parser.set("sheet", "merged_cell");
+				parser.set("search_merged_cell", "sweep_line");
+				parser.addColumn("d", "string").set("column_number", "D");
+				parser.addColumn("e", "string").set("column_number", "E");
+				parser.addColumn("g", "string").set("column_number", "G");
+				parser.addColumn("h", "string").set("column_number", "H");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(4));
+				String[][] expected = { { null, null, null, null }, { null, null, null, null },
+						{ "data", "data", "data", "data" }, { "data", "data", null, null } };
+				for (int i = 0; i < expected.length; i++) {
+					OutputRecord r = result.get(i);
+					assertThat(r.getAsString("d"), is(expected[i][0]));
+					assertThat(r.getAsString("e"), is(expected[i][1]));
+					assertThat(r.getAsString("g"), is(expected[i][2]));
+					assertThat(r.getAsString("h"), is(expected[i][3]));
+				}
+			}
+		}
+	}
+
 	private void test(String excelFile, Object arg, boolean search) {
 		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
 			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
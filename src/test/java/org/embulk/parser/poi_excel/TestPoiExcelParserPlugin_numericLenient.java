@@ -0,0 +1,80 @@
+package org.embulk.parser.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.util.List;
+
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelParserPlugin_numericLenient {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@Theory
+	public void testNumericLenient_false(String excelFile) throws Exception {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("sheet", "style");
+			parser.set("on_convert_error", "constant");
+			parser.addColumn("l", "long").set("value", "constant.123");
+			parser.addColumn("d", "double").set("value", "constant. -1.5e2 ");
+			parser.addColumn("l-sep", "long").set("value", "constant.1,234");
+			parser.addColumn("d-sep", "double").set("value", "constant.1,234.5");
+			parser.addColumn("d-bad", "double").set("value", "constant.N/A");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(5));
+			for (OutputRecord r : result) {
+				assertThat(r.getAsLong("l"), is(123L));
+				assertThat(r.getAsDouble("d"), is(-150d));
+				assertThat(r.getAsLong("l-sep"), is(nullValue()));
+				assertThat(r.getAsDouble("d-sep"), is(nullValue()));
+				assertThat(r.getAsDouble("d-bad"), is(nullValue()));
+			}
+		}
+	}
+
+	@Theory
+	public void testNumericLenient_true(String excelFile) throws Exception {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("sheet", "style");
+			parser.set("on_convert_error", "constant");
+			parser.set("numeric_lenient", true);
+			parser.addColumn("l-sep", "long").set("value", "constant.-1,234,567");
+			parser.addColumn("d-sep", "double").set("value", "constant.1,234.5");
+			parser.addColumn("l-full", "long").set("value", "constant.\uff11\uff0c\uff12\uff13\uff14");
+			parser.addColumn("d-full", "double").set("value", "constant.\uff0d\uff11\uff12\uff0e\uff15");
+			parser.addColumn("l-bad", "long").set("value", "constant.12,34");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(5));
+			for (OutputRecord r : result) {
+				assertThat(r.getAsLong("l-sep"), is(-1234567L));
+				assertThat(r.getAsDouble("d-sep"), is(1234.5d));
+				assertThat(r.getAsLong("l-full"), is(1234L));
+				assertThat(r.getAsDouble("d-full"), is(-12.5d));
+				assertThat(r.getAsLong("l-bad"), is(nullValue()));
+			}
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package org.embulk.parser.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.spi.time.Timestamp;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelParserPlugin_pipeline {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@Theory
+	public void testPipeline(String excelFile) throws ParseException {
+		for (String reader : new String[] { "usermodel", "streaming" }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", reader);
+				parser.set("pipeline_threads", 2);
+				parser.set("sheet", "test1");
+				parser.set("skip_header_lines", 1);
+				parser.set("default_timezone", "Asia/Tokyo");
+				parser.addColumn("boolean", "boolean");
+				parser.addColumn("long", "long");
+				parser.addColumn("double", "double");
+				parser.addColumn("string", "string");
+				parser.addColumn("timestamp", "timestamp").set("format", "%Y/%m/%d");
+				parser.addColumn("row", "long").set("value", "row_number");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(7));
+				check1(result, 0, true, 123L, 123.4d, "abc", "2015/10/4");
+				check1(result, 1, false, 456L, 456.7d, "def", "2015/10/5");
+				check1(result, 2, false, 123L, 123d, "456", "2015/10/6");
+				check1(result, 3, true, 123L, 123.4d, "abc", "2015/10/7");
+				check1(result, 4, true, 123L, 123.4d, "abc", "2015/10/4");
+				check1(result, 5, true, 1L, 1d, "true", null);
+				check1(result, 6, null, null, null, null, null);
+			}
+		}
+	}
+
+	@Theory
+	public void testPipeline_flush(String excelFile) throws ParseException {
+		for (String reader : new String[] { "usermodel", "streaming" }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", reader);
+				parser.set("pipeline_threads", 2);
+				parser.set("sheets", Arrays.asList("merged_cell", "test1"));
+				parser.set("flush_count", 3);
+				parser.set("flush_on_sheet", true);
+				parser.addColumn("sheet", "string").set("value", "sheet_name");
+				parser.addColumn("row", "long").set("value", "row_number");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				// the pages are flushed as the task thread converts the rows
+				assertThat(result.size(), is(4 + 8));
+				int[] pages = { 0, 0, 0, 1, 2, 2, 2, 3, 3, 3, 4, 4 };
+				for (int i = 0; i < result.size(); i++) {
+					OutputRecord r = result.get(i);
+					assertThat(r.toString(), r.getPageIndex(), is(pages[i]));
+					assertThat(r.getAsString("sheet"), is((i < 4) ? "merged_cell" : "test1"));
+					assertThat(r.getAsLong("row"), is((long) ((i < 4) ? i + 1 : i - 3)));
+				}
+			}
+		}
+	}
+
+	@Theory
+	public void testPipeline_mergedCell(String excelFile) throws ParseException {
+		for (String search : new String[] { "hash_search", "interval_tree", "sweep_line" }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("pipeline_threads", 2);
+				parser.set("sheet", "merged_cell");
+				parser.set("search_merged_cell", search);
+				parser.addColumn("a", "string");
+				parser.addColumn("b", "string");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(4));
+				check2(result, 0, "test3-a1", "test3-a1");
+				check2(result, 1, "data", "0");
+				check2(result, 2, null, null);
+				check2(result, 3, null, null);
+			}
+		}
+	}
+
+	private void check2(List<OutputRecord> result, int index, String a, String b) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsString("a"), is(a));
+		assertThat(r.getAsString("b"), is(b));
+	}
+
+	private SimpleDateFormat sdf;
+	{
+		sdf = new SimpleDateFormat("yyyy/MM/dd");
+		sdf.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo"));
+	}
+
+	private void check1(List<OutputRecord> result, int index, Boolean b, Long l, Double d, String s, String t)
+			throws ParseException {
+		Timestamp timestamp = (t != null) ? Timestamp.ofEpochMilli(sdf.parse(t).getTime()) : null;
+
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsBoolean("boolean"), is(b));
+		assertThat(r.getAsLong("long"), is(l));
+		assertThat(r.getAsDouble("double"), is(d));
+		assertThat(r.getAsString("string"), is(s));
+		assertThat(r.getAsTimestamp("timestamp"), is(timestamp));
+		assertThat(r.getAsLong("row"), is((long) (index + 2)));
+	}
+}
@@ -0,0 +1,320 @@
+package org.embulk.parser.poi_excel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.spi.time.Timestamp;
+import org.junit.experimental.theories.DataPoints;
+import org.junit.experimental.theories.Theories;
+import org.junit.experimental.theories.Theory;
+import org.junit.runner.RunWith;
+
+@RunWith(Theories.class)
+public class TestPoiExcelParserPlugin_reader {
+
+	@DataPoints
+	public static String[] FILES = { "test1.xls", "test2.xlsx" };
+
+	@Theory
+	public void testStreaming(String excelFile) throws ParseException {
+		testStreaming(excelFile, false, false);
+	}
+
+	@Theory
+	public void testStreaming_parallelLoad(String excelFile) throws ParseException {
+		testStreaming(excelFile, true, false);
+		testStreaming(excelFile, true, true);
+	}
+
+	private void testStreaming(String excelFile, boolean parallelLoad, boolean spoolFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("parallel_load", parallelLoad);
+			parser.set("spool_file", spoolFile);
+			parser.set("sheet", "test1");
+			parser.set("skip_header_lines", 1);
+			parser.set("default_timezone", "Asia/Tokyo");
+			parser.addColumn("boolean", "boolean");
+			parser.addColumn("long", "long");
+			parser.addColumn("double", "double");
+			parser.addColumn("string", "string");
+			parser.addColumn("timestamp", "timestamp").set("format", "%Y/%m/%d");
+			parser.addColumn("fix_value", "string").set("cell_address", "B1");
+			parser.addColumn("other_sheet_value", "string").set("cell_address", "style!B5");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(7));
+			check1(result, 0, true, 123L, 123.4d, "abc", "2015/10/4");
+			check1(result, 1, false, 456L, 456.7d, "def", "2015/10/5");
+			check1(result, 2, false, 123L, 123d, "456", "2015/10/6");
+			check1(result, 3, true, 123L, 123.4d, "abc", "2015/10/7");
+			check1(result, 4, true, 123L, 123.4d, "abc", "2015/10/4");
+			check1(result, 5, true, 1L, 1d, "true", null);
+			check1(result, 6, null, null, null, null, null);
+		}
+	}
+
+	private SimpleDateFormat sdf;
+	{
+		sdf = new SimpleDateFormat("yyyy/MM/dd");
+		sdf.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo"));
+	}
+
+	private void check1(List<OutputRecord> result, int index, Boolean b, Long l, Double d, String s, String t)
+			throws ParseException {
+		Timestamp timestamp = (t != null) ? Timestamp.ofEpochMilli(sdf.parse(t).getTime()) : null;
+
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsBoolean("boolean"), is(b));
+		assertThat(r.getAsLong("long"), is(l));
+		assertThat(r.getAsDouble("double"), is(d));
+		assertThat(r.getAsString("string"), is(s));
+		assertThat(r.getAsTimestamp("timestamp"), is(timestamp));
+		assertThat(r.getAsString("fix_value"), is("long"));
+		assertThat(r.getAsString("other_sheet_value"), is("bottom"));
+	}
+
+	@Theory
+	public void testSpoolFile(String excelFile) throws ParseException {
+		for (String reader : new String[] { "usermodel", "streaming" }) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", reader);
+				parser.set("spool_file", true);
+				parser.set("sheet", "merged_cell");
+				parser.addColumn("a", "string");
+				parser.addColumn("b", "string");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(4));
+				check2(result, 0, "test3-a1", "test3-a1");
+				check2(result, 1, "data", "0");
+			}
+		}
+	}
+
+	@Theory
+	public void testPrefetchFiles(String excelFile) throws ParseException {
+		for (String reader : new String[] { "usermodel", "streaming" }) {
+			for (boolean spoolFile : new boolean[] { false, true }) {
+				try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+					tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+					EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+					parser.set("reader", reader);
+					parser.set("spool_file", spoolFile);
+					parser.set("prefetch_files", 1);
+					parser.set("sheet", "merged_cell");
+					parser.addColumn("a", "string");
+					parser.addColumn("b", "string");
+
+					URL inFile = getClass().getResource(excelFile);
+					List<OutputRecord> result = tester.runParser(inFile, parser);
+
+					assertThat(result.size(), is(4));
+					check2(result, 0, "test3-a1", "test3-a1");
+					check2(result, 1, "data", "0");
+				}
+			}
+		}
+	}
+
+	@Theory
+	public void testStreaming_mergedCell(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("sheet", "merged_cell");
+			parser.addColumn("a", "string");
+			parser.addColumn("b", "string");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(4));
+			check2(result, 0, "test3-a1", "test3-a1");
+			check2(result, 1, "data", "0");
+			check2(result, 2, null, null);
+			check2(result, 3, null, null);
+		}
+	}
+
+	@Theory
+	public void testStreaming_columnFilter(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("sheet", "merged_cell");
+			// column A is not read except the first cell of the merged region
+			parser.addColumn("b", "string").set("column_number", "B");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(4));
+			assertThat(result.get(0).getAsString("b"), is("test3-a1"));
+			assertThat(result.get(1).getAsString("b"), is("0"));
+			assertThat(result.get(2).getAsString("b"), is((String) null));
+			assertThat(result.get(3).getAsString("b"), is((String) null));
+		}
+	}
+
+	@Theory
+	public void testStreaming_phonetic(String excelFile) throws ParseException {
+		// comment!A2 has the phonetic guide
+		List<OutputRecord> expected = runPhonetic(excelFile, "usermodel", false);
+		assertThat(expected.get(1).getAsString("a"), is("\u30b3\u30e1\u30f3\u30c8\u306e\u7121\u3044\u30bb\u30eb"));
+
+		for (boolean parallelLoad : new boolean[] { false, true }) {
+			List<OutputRecord> result = runPhonetic(excelFile, "streaming", parallelLoad);
+
+			assertThat(result.size(), is(expected.size()));
+			for (int i = 0; i < result.size(); i++) {
+				assertThat(result.get(i).getAsString("a"), is(expected.get(i).getAsString("a")));
+			}
+		}
+	}
+
+	private List<OutputRecord> runPhonetic(String excelFile, String reader, boolean parallelLoad) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", reader);
+			parser.set("parallel_load", parallelLoad);
+			parser.set("sheet", "comment");
+			parser.addColumn("a", "string");
+
+			URL inFile = getClass().getResource(excelFile);
+			return tester.runParser(inFile, parser);
+		}
+	}
+
+	private void check2(List<OutputRecord> result, int index, String a, String b) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsString("a"), is(a));
+		assertThat(r.getAsString("b"), is(b));
+	}
+
+	@Theory
+	public void testStreaming_formula(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("sheet", "formula_replace");
+			parser.addColumn("text", "string");
+			parser.addColumn("formula", "string").set("cell_column", "A").set("value", "cell_formula");
+			parser.addColumn("color", "string").set("cell_address", "style!A1")
+					.set("value", "cell_style.fill_foreground_color");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(2));
+			check4(result, 0, "boolean", "test1!A1");
+			check4(result, 1, "test2-b1", "B1");
+		}
+	}
+
+	private void check4(List<OutputRecord> result, int index, String text, String formula) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsString("text"), is(text));
+		assertThat(r.getAsString("formula"), is(formula));
+		assertThat(r.getAsString("color"), is("ff0000"));
+	}
+
+	@Theory
+	public void testStreaming_recordTypeColumn(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("sheet", "test1");
+			parser.set("record_type", "column");
+			parser.set("skip_header_lines", 1);
+			parser.addColumn("text", "string").set("cell_row", "5");
+			parser.addColumn("text_col", "long").set("cell_row", "5").set("value", "column_number");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(6));
+			check3(result, 0, "123", 2L);
+			check3(result, 1, "123.4", 3L);
+			check3(result, 2, "abc", 4L);
+			check3(result, 3, "2015/10/07", 5L);
+			check3(result, 4, null, 6L);
+			check3(result, 5, "CELL_TYPE_STRING", 7L);
+		}
+	}
+
+	private void check3(List<OutputRecord> result, int index, String text, Long column) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsString("text"), is(text));
+		assertThat(r.getAsLong("text_col"), is(column));
+	}
+
+	@Theory
+	public void testStreaming_numericRawText(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+			parser.set("reader", "streaming");
+			parser.set("sheet", "test1");
+			parser.set("skip_header_lines", 1);
+			parser.set("numeric_raw_text", true);
+			parser.addColumn("long", "long").set("column_number", "B");
+			parser.addColumn("double", "double").set("column_number", "C");
+			parser.addColumn("long-s", "string").set("column_number", "B");
+			parser.addColumn("double-s", "string").set("column_number", "C");
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			assertThat(result.size(), is(7));
+			check5(result, 0, 123L, 123.4d, "123", "123.4");
+			check5(result, 1, 456L, 456.7d, "456", "456.7");
+			check5(result, 2, 123L, 123d, "123", "123");
+			check5(result, 5, 1L, 1d, "true", "true");
+		}
+	}
+
+	private void check5(List<OutputRecord> result, int index, Long l, Double d, String ls, String ds) {
+		OutputRecord r = result.get(index);
+		// System.out.println(r);
+		assertThat(r.getAsLong("long"), is(l));
+		assertThat(r.getAsDouble("double"), is(d));
+		assertThat(r.getAsString("long-s"), is(ls));
+		assertThat(r.getAsString("double-s"), is(ds));
+	}
+}
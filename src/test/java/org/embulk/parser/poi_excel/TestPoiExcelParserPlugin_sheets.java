@@ -2,17 +2,28 @@ package org.embulk.parser.poi_excel;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.net.URL;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.embulk.parser.EmbulkPluginTester;
 import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
 import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.parser.poi_excel.bean.util.FormulaCacheClear;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
 import org.junit.experimental.theories.DataPoints;
 import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
@@ -77,6 +88,205 @@ public class TestPoiExcelParserPlugin_sheets {
 		}
 	}
 
+	@Theory
+	public void testParallelSheets(String excelFile) throws ParseException {
+		for (String reader : Arrays.asList("usermodel", "streaming")) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = newSheetsParserConfig(tester);
+				parser.set("reader", reader);
+				parser.set("parallel_sheets", 3);
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(8));
+				check1(result, 0, "abc", 123L);
+				check1(result, 1, "true", 1L);
+				check1(result, 2, null, null);
+				check1(result, 3, "boolean", 0L);
+				check1(result, 4, "test2-b1", 0L);
+				check1(result, 5, "left", -1L);
+				check1(result, 6, "right", -1L);
+				check1(result, 7, "bottom", -1L);
+			}
+		}
+	}
+
+	@Theory
+	public void testParallelSheets_unordered(String excelFile) throws ParseException {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+			EmbulkTestParserConfig parser = newSheetsParserConfig(tester);
+			parser.set("parallel_sheets", 3);
+			parser.set("parallel_sheets_ordered", false);
+
+			URL inFile = getClass().getResource(excelFile);
+			List<OutputRecord> result = tester.runParser(inFile, parser);
+
+			List<String> list = new ArrayList<>();
+			for (OutputRecord record : result) {
+				list.add(record.getAsString("text") + "," + record.getAsLong("number"));
+			}
+			Collections.sort(list);
+			assertThat(list, is(Arrays.asList("abc,123", "boolean,0", "bottom,-1", "left,-1", "null,null",
+					"right,-1", "test2-b1,0", "true,1")));
+		}
+	}
+
+	@Theory
+	public void testParallelSheets_spoolFile(String excelFile) throws ParseException {
+		for (String reader : Arrays.asList("usermodel", "streaming")) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = newSheetsParserConfig(tester);
+				parser.set("reader", reader);
+				parser.set("spool_file", true);
+				parser.set("parallel_sheets", 3);
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(8));
+				check1(result, 0, "abc", 123L);
+				check1(result, 1, "true", 1L);
+				check1(result, 2, null, null);
+				check1(result, 3, "boolean", 0L);
+				check1(result, 4, "test2-b1", 0L);
+				check1(result, 5, "left", -1L);
+				check1(result, 6, "right", -1L);
+				check1(result, 7, "bottom", -1L);
+			}
+		}
+	}
+
+	@Theory
+	public void testParallelSheets_comment(String excelFile) throws ParseException {
+		for (String reader : Arrays.asList("usermodel", "streaming")) {
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(PoiExcelParserPlugin.TYPE, PoiExcelParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+				parser.set("reader", reader);
+				parser.set("spool_file", true);
+				parser.set("parallel_sheets", 2);
+				parser.set("sheets", Arrays.asList("comment", "merged_cell"));
+				parser.addColumn("author", "string").set("value", "cell_comment.author");
+				parser.addColumn("b", "string");
+
+				URL inFile = getClass().getResource(excelFile);
+				List<OutputRecord> result = tester.runParser(inFile, parser);
+
+				assertThat(result.size(), is(6));
+				assertThat(result.get(0).getAsString("author"), is("hishidama"));
+				assertThat(result.get(1).getAsString("author"), is((String) null));
+				assertThat(result.get(2).getAsString("author"), is((String) null));
+				assertThat(result.get(2).getAsString("b"), is("test3-a1"));
+				assertThat(result.get(3).getAsString("b"), is("0"));
+			}
+		}
+	}
+
+	@Theory
+	public void testParallelSheets_error(String excelFile) throws ParseException {
+		for (boolean ordered : Arrays.asList(true, false)) {
+			BlockParserPlugin.INTERRUPTED.set(false);
+			try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+				tester.addParserPlugin(BlockParserPlugin.TYPE, BlockParserPlugin.class);
+
+				EmbulkTestParserConfig parser = tester.newParserConfig(BlockParserPlugin.TYPE);
+				parser.set("sheets", Arrays.asList("test1", "style"));
+				parser.set("parallel_sheets", 2);
+				parser.set("parallel_sheets_ordered", ordered);
+				parser.addColumn("a", "long").set("column_number", "A");
+
+				URL inFile = getClass().getResource(excelFile);
+				tester.runParser(inFile, parser);
+			} catch (Exception e) {
+				// the error of the second sheet is reported while the first sheet is running
+				assertThat(getMessages(e).contains("convert error. value=red"), is(true));
+				assertThat(BlockParserPlugin.INTERRUPTED.get(), is(true));
+				continue;
+			}
+			fail("must throw Exception");
+		}
+	}
+
+	private static String getMessages(Throwable e) {
+		StringBuilder sb = new StringBuilder();
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			sb.append(t.getMessage()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * block the sheet test1 until the worker is interrupted.
+	 */
+	public static class BlockParserPlugin extends PoiExcelParserPlugin {
+
+		public static final String TYPE = "poi_excel_block";
+
+		static final AtomicBoolean INTERRUPTED = new AtomicBoolean();
+
+		@Override
+		protected FormulaEvaluator runSheet(PluginTask task, Schema schema, Sheet sheet, int startRowIndex,
+				int endRowIndex, FormulaCacheClear cacheClear, FormulaEvaluator workbookEvaluator,
+				PageBuilder pageBuilder, PoiExcelPageFlusher flusher) {
+			if (sheet.getSheetName().equals("test1")) {
+				try {
+					new CountDownLatch(1).await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					INTERRUPTED.set(true);
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+			return super.runSheet(task, schema, sheet, startRowIndex, endRowIndex, cacheClear, workbookEvaluator,
+					pageBuilder, flusher);
+		}
+	}
+
+	private EmbulkTestParserConfig newSheetsParserConfig(EmbulkPluginTester tester) {
+		EmbulkTestParserConfig parser = tester.newParserConfig(PoiExcelParserPlugin.TYPE);
+		parser.set("sheets", Arrays.asList("test1", "formula_replace", "style"));
+		parser.addColumn("text", "string");
+		parser.addColumn("number", "long");
+
+		Map<String, Object> sheetOptions = new HashMap<>();
+		{
+			Map<String, Object> sheet = new HashMap<>();
+			sheet.put("skip_header_lines", "5");
+			Map<String, Object> columns = new HashMap<>();
+			columns.put("text", newMap("column_number", "D"));
+			columns.put("number", newMap("column_number", "B"));
+			sheet.put("columns", columns);
+			sheetOptions.put("test1", sheet);
+		}
+		{
+			Map<String, Object> sheet = new HashMap<>();
+			Map<String, Object> columns = new HashMap<>();
+			columns.put("number", newMap("value", "constant.0"));
+			sheet.put("columns", columns);
+			sheetOptions.put("formula_replace", sheet);
+		}
+		{
+			Map<String, Object> sheet = new HashMap<>();
+			sheet.put("skip_header_lines", "2");
+			Map<String, Object> columns = new HashMap<>();
+			columns.put("text", newMap("column_number", "B"));
+			columns.put("number", newMap("value", "constant.-1"));
+			sheet.put("columns", columns);
+			sheetOptions.put("style", sheet);
+		}
+		parser.set("sheet_options", sheetOptions);
+
+		return parser;
+	}
+
 	private Map<String, Object> newMap(String key, Object value) {
 		Map<String, Object> map = new HashMap<>();
 		map.put(key, value);
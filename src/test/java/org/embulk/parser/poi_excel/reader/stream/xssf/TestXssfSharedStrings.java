@@ -0,0 +1,116 @@
+package org.embulk.parser.poi_excel.reader.stream.xssf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class TestXssfSharedStrings {
+	private static final String NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	@Test
+	public void testGetEntryAt_wait() throws Exception {
+		XssfSharedStrings strings = new XssfSharedStrings();
+		addEntry(strings, "a");
+
+		// the entry beyond the loaded entries
+		EntryReader reader = new EntryReader(strings, 2);
+		reader.start();
+		awaitWaiting(reader);
+
+		addEntry(strings, "b");
+		awaitWaiting(reader);
+
+		addEntry(strings, "c");
+		reader.join(10 * 1000);
+		assertThat(reader.isAlive(), is(false));
+		assertThat(reader.error.get(), is(nullValue()));
+		assertThat(reader.result.get(), is("c"));
+
+		// the loaded entry does not wait
+		assertThat(strings.getEntryAt(0), is("a"));
+	}
+
+	@Test
+	public void testGetEntryAt_loaded() throws Exception {
+		XssfSharedStrings strings = new XssfSharedStrings();
+		addEntry(strings, "a");
+
+		EntryReader reader = new EntryReader(strings, 1);
+		reader.start();
+		awaitWaiting(reader);
+
+		// the end of the table
+		strings.load(null);
+		reader.join(10 * 1000);
+		assertThat(reader.isAlive(), is(false));
+		assertThat(reader.error.get() instanceof IndexOutOfBoundsException, is(true));
+	}
+
+	@Test
+	public void testPhonetic() throws Exception {
+		XssfSharedStrings strings = new XssfSharedStrings();
+		strings.startElement(NS, "si", "si", new AttributesImpl());
+		addText(strings, "ab");
+		strings.startElement(NS, "rPh", "rPh", new AttributesImpl());
+		addText(strings, "x");
+		strings.endElement(NS, "rPh", "rPh");
+		addText(strings, "c");
+		strings.endElement(NS, "si", "si");
+		addEntry(strings, "d");
+		strings.load(null);
+
+		// the phonetic runs are excluded
+		assertThat(strings.getEntryAt(0), is("abc"));
+		assertThat(strings.getEntryAt(1), is("d"));
+	}
+
+	private static void addEntry(XssfSharedStrings strings, String s) throws SAXException {
+		strings.startElement(NS, "si", "si", new AttributesImpl());
+		addText(strings, s);
+		strings.endElement(NS, "si", "si");
+	}
+
+	private static void addText(XssfSharedStrings strings, String s) throws SAXException {
+		strings.startElement(NS, "t", "t", new AttributesImpl());
+		strings.characters(s.toCharArray(), 0, s.length());
+		strings.endElement(NS, "t", "t");
+	}
+
+	private static void awaitWaiting(Thread thread) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10 * 1000;
+		while (thread.getState() != Thread.State.WAITING) {
+			if (!thread.isAlive() || System.currentTimeMillis() > deadline) {
+				fail("thread is not waiting. state=" + thread.getState());
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	private static class EntryReader extends Thread {
+		private final XssfSharedStrings strings;
+		private final int index;
+		final AtomicReference<String> result = new AtomicReference<>();
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+
+		public EntryReader(XssfSharedStrings strings, int index) {
+			this.strings = strings;
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			try {
+				result.set(strings.getEntryAt(index));
+			} catch (Throwable t) {
+				error.set(t);
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class TestExcelDateConverter {
+
+	@Test
+	public void testLeapYearBug() throws ParseException {
+		ExcelDateConverter converter = new ExcelDateConverter(DateTimeZone.UTC, false);
+		// Excel thinks 1900-02-29 (60) is valid
+		assertThat(converter.toEpochMilli(59), is(parse("1900/02/28 00:00:00", "UTC")));
+		assertThat(converter.toEpochMilli(60), is(parse("1900/03/01 00:00:00", "UTC")));
+		assertThat(converter.toEpochMilli(61), is(parse("1900/03/01 00:00:00", "UTC")));
+		assertThat(converter.toEpochMilli(62), is(parse("1900/03/02 00:00:00", "UTC")));
+
+		for (double value : new double[] { 0, 1, 58.5, 59, 59.5, 60, 60.5, 61, 61.5, 62 }) {
+			assertSameAsDateUtil(value, false, "UTC");
+		}
+	}
+
+	@Test
+	public void testDate1904() throws ParseException {
+		ExcelDateConverter converter = new ExcelDateConverter(DateTimeZone.UTC, true);
+		assertThat(converter.toEpochMilli(0), is(parse("1904/01/01 00:00:00", "UTC")));
+		assertThat(converter.toEpochMilli(1.5), is(parse("1904/01/02 12:00:00", "UTC")));
+		// 2017/01/02
+		assertThat(converter.toEpochMilli(41275), is(parse("2017/01/02 00:00:00", "UTC")));
+
+		for (double value : new double[] { 0, 1.5, 59, 60, 61, 41274, 41274.75 }) {
+			assertSameAsDateUtil(value, true, "UTC");
+			assertSameAsDateUtil(value, true, "Asia/Tokyo");
+		}
+	}
+
+	@Test
+	public void testDaylightSavingTime() throws ParseException {
+		ExcelDateConverter converter = new ExcelDateConverter(DateTimeZone.forID("America/New_York"), false);
+		// gap: 2017/03/12 02:30 does not exist. the earlier offset (-05:00) is used
+		assertThat(converter.toEpochMilli(42806 + 2.5 / 24), is(parse("2017/03/12 07:30:00", "UTC")));
+		// overlap: 2017/11/05 01:30 exists twice. the later offset (-05:00) is used
+		assertThat(converter.toEpochMilli(43044 + 1.5 / 24), is(parse("2017/11/05 06:30:00", "UTC")));
+
+		// every 30 minutes around the transitions (the cached offset is switched)
+		for (int day : new int[] { 42805, 43043 }) {
+			for (int i = 0; i < 3 * 48; i++) {
+				assertSameAsDateUtil(day + i / 48d, false, "America/New_York");
+			}
+		}
+	}
+
+	@Test
+	public void testNegative() {
+		ExcelDateConverter converter = new ExcelDateConverter(DateTimeZone.UTC, false);
+		try {
+			converter.toEpochMilli(-1);
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage().contains("invalid Excel date"), is(true));
+			return; // success
+		}
+		fail("must throw IllegalArgumentException");
+	}
+
+	private static void assertSameAsDateUtil(double value, boolean date1904, String zone) {
+		ExcelDateConverter converter = new ExcelDateConverter(DateTimeZone.forID(zone), date1904);
+		long expected = DateUtil.getJavaDate(value, date1904, TimeZone.getTimeZone(zone)).getTime();
+		assertThat(value + " " + zone, converter.toEpochMilli(value), is(expected));
+	}
+
+	private static long parse(String s, String zone) throws ParseException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+		format.setTimeZone(TimeZone.getTimeZone(zone));
+		return format.parse(s).getTime();
+	}
+}
@@ -0,0 +1,216 @@
+package org.embulk.parser.poi_excel.visitor.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.embulk.config.Config;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.Task;
+import org.embulk.config.TaskSource;
+import org.embulk.parser.EmbulkPluginTester;
+import org.embulk.parser.EmbulkTestOutputPlugin.OutputRecord;
+import org.embulk.parser.EmbulkTestParserConfig;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnConfig;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.ParserPlugin;
+import org.embulk.spi.Schema;
+import org.embulk.spi.SchemaConfig;
+import org.embulk.spi.time.Timestamp;
+import org.embulk.spi.time.TimestampParseException;
+import org.embulk.spi.time.TimestampParser;
+import org.embulk.spi.time.TimestampParser.TimestampColumnOption;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class TestFastTimestampParser {
+
+	@Test
+	public void testZone() {
+		List<OutputRecord> result = run("%Y-%m-%d %H:%M:%S %z", "UTC", "2017-01-02 03:04:05 +0900",
+				"2017-01-02 03:04:05 +09:00", "2017-01-02 03:04:05 -0530", "2017-01-02 03:04:05 UTC",
+				"2017-01-02 03:04:05 +9");
+		assertSameAsTimestampParser(result);
+		assertNative(result, true, true, true, false, false);
+	}
+
+	@Test
+	public void testOneDigit() {
+		List<OutputRecord> result = run("%Y/%m/%d %H:%M:%S", "UTC", "2017/1/2 3:4:5", "2017/01/2 03:4:05",
+				"2017/1/02 3:04:5", "2017/001/02 03:04:05");
+		assertSameAsTimestampParser(result);
+		assertNative(result, true, true, true, false);
+	}
+
+	@Test
+	public void testYearFollowedByDigit() {
+		List<OutputRecord> result = run("%Y%m%d", "UTC", "20170102", "2017012");
+		assertSameAsTimestampParser(result);
+
+		result = run("%Y-%m-%d", "UTC", "2017-01-02", "20170-01-02");
+		assertSameAsTimestampParser(result);
+		assertNative(result, true, false);
+	}
+
+	@Test
+	public void testDaylightSavingTime() {
+		List<OutputRecord> result = run("%Y-%m-%d %H:%M:%S", "America/New_York", "2017-03-12 01:30:00",
+				"2017-03-12 02:30:00", "2017-03-12 03:30:00", "2017-11-05 00:30:00", "2017-11-05 01:30:00",
+				"2017-11-05 02:30:00");
+		assertSameAsTimestampParser(result);
+		assertNative(result, true, true, true, true, true, true);
+	}
+
+	@Test
+	public void testLeftover() {
+		List<OutputRecord> result = run("%Y-%m-%d", "UTC", "2017-01-02x", "2017-01-02 extra", "2017-01-02 ",
+				"2017-02-30", "N/A", "");
+		assertSameAsTimestampParser(result);
+		assertNative(result, false, false, false, false, false, false);
+	}
+
+	@Test
+	public void testFallbackFormat() {
+		List<OutputRecord> result = run("%Y-%m-%d %H:%M:%S.%N", "UTC", "2017-01-02 03:04:05.123");
+		assertSameAsTimestampParser(result);
+		assertNative(result, false);
+
+		result = run("%b %d %Y", "UTC", "Jan 02 2017");
+		assertSameAsTimestampParser(result);
+		assertNative(result, false);
+
+		result = run("%m/%d", "UTC", "01/02");
+		assertSameAsTimestampParser(result);
+		assertNative(result, false);
+	}
+
+	@Test
+	public void testCacheError() {
+		List<OutputRecord> result = run("%Y-%m-%d", "UTC", "N/A", "N/A", "2017-01-02", "N/A");
+		assertSameAsTimestampParser(result);
+		// TimestampParser is called only at the first time
+		assertThat(result.get(0).getAsLong("calls"), is(1L));
+		assertThat(result.get(1).getAsLong("calls"), is(0L));
+		assertThat(result.get(3).getAsLong("calls"), is(0L));
+	}
+
+	private static void assertSameAsTimestampParser(List<OutputRecord> result) {
+		for (OutputRecord r : result) {
+			String text = r.getAsString("text");
+			String expected = r.getAsString("expected");
+			assertThat(text, r.getAsString("actual"), is(expected));
+			assertThat(text, r.getAsString("cached"), is(expected));
+			assertThat(text, r.getAsLong("cached_calls"), is(0L));
+		}
+	}
+
+	private static void assertNative(List<OutputRecord> result, boolean... expected) {
+		assertThat(result.size(), is(expected.length));
+		for (int i = 0; i < expected.length; i++) {
+			OutputRecord r = result.get(i);
+			assertThat(r.getAsString("text"), r.getAsLong("calls"), is(expected[i] ? 0L : 1L));
+		}
+	}
+
+	private List<OutputRecord> run(String format, String timezone, String... texts) {
+		try (EmbulkPluginTester tester = new EmbulkPluginTester()) {
+			tester.addParserPlugin(CompareParserPlugin.TYPE, CompareParserPlugin.class);
+
+			EmbulkTestParserConfig parser = tester.newParserConfig(CompareParserPlugin.TYPE);
+			parser.set("texts", Arrays.asList(texts));
+			parser.addColumn("t", "timestamp").set("format", format).set("timezone", timezone);
+
+			return tester.runParser(Collections.<String> emptyList(), parser);
+		}
+	}
+
+	/**
+	 * parse the texts by TimestampParser and FastTimestampParser. (TimestampParser needs the Embulk session)
+	 */
+	public static class CompareParserPlugin implements ParserPlugin {
+
+		public static final String TYPE = "FastTimestampParserCompare";
+
+		public interface PluginTask extends Task, TimestampParser.Task {
+
+			@Config("columns")
+			public SchemaConfig getColumns();
+
+			@Config("texts")
+			public List<String> getTexts();
+		}
+
+		private static final Schema SCHEMA = new Schema(Arrays.asList(
+				new Column(0, "text", Types.STRING),
+				new Column(1, "expected", Types.STRING),
+				new Column(2, "actual", Types.STRING),
+				new Column(3, "cached", Types.STRING),
+				new Column(4, "calls", Types.LONG),
+				new Column(5, "cached_calls", Types.LONG)));
+
+		@Override
+		public void transaction(ConfigSource config, ParserPlugin.Control control) {
+			PluginTask task = config.loadConfig(PluginTask.class);
+			control.run(task.dump(), SCHEMA);
+		}
+
+		@Override
+		public void run(TaskSource taskSource, Schema schema, FileInput input, PageOutput output) {
+			PluginTask task = taskSource.loadTask(PluginTask.class);
+
+			try (PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output)) {
+				for (ColumnConfig config : task.getColumns().getColumns()) {
+					TimestampColumnOption option = config.getOption().loadConfig(TimestampColumnOption.class);
+					String format = option.getFormat().or(task.getDefaultTimestampFormat());
+					TimestampParser expectedParser = new TimestampParser(task, option);
+					final int[] parseCount = { 0 };
+					TimestampParser countParser = new TimestampParser(task, option) {
+
+						@Override
+						public Timestamp parse(String text) throws TimestampParseException {
+							parseCount[0]++;
+							return super.parse(text);
+						}
+					};
+					FastTimestampParser parser = new FastTimestampParser(countParser, format);
+
+					for (String text : task.getTexts()) {
+						pageBuilder.setString(schema.getColumn(0), text);
+						pageBuilder.setString(schema.getColumn(1), parse(expectedParser, text));
+						parseCount[0] = 0;
+						pageBuilder.setString(schema.getColumn(2), parse(parser, text));
+						pageBuilder.setLong(schema.getColumn(4), parseCount[0]);
+						parseCount[0] = 0;
+						pageBuilder.setString(schema.getColumn(3), parse(parser, text));
+						pageBuilder.setLong(schema.getColumn(5), parseCount[0]);
+						pageBuilder.addRecord();
+					}
+				}
+				pageBuilder.finish();
+			}
+		}
+
+		private static String parse(TimestampParser parser, String text) {
+			try {
+				return parser.parse(text).toString();
+			} catch (TimestampParseException e) {
+				return "error";
+			}
+		}
+
+		private static String parse(FastTimestampParser parser, String text) {
+			try {
+				return parser.parse(text).toString();
+			} catch (TimestampParseException e) {
+				return "error";
+			}
+		}
+	}
+}